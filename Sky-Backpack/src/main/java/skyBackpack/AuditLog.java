@@ -0,0 +1,251 @@
+package skyBackpack;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * History of every slot change saved into a backpack (audit/*.log).
+ *
+ * Region threads only claim a slot in a preallocated ring buffer and store
+ * plain fields and item references there: no lock, allocation, formatting or
+ * I/O. A background task drains the buffer every audit.flush-interval-seconds
+ * and appends the records to the current file, which is rotated at
+ * audit.max-file-mb; only the newest audit.max-files are kept. When the buffer
+ * is full, records are dropped and counted rather than blocking the caller.
+ *
+ * Recorded items are the ones stored in the page, which are never modified
+ * in place, so keeping references until the writer runs is safe.
+ *
+ * File:
+ *   int    magic 'SKBA'
+ *   short  version
+ *   record*:
+ *     long   time (epoch millis)
+ *     long   uuid most significant bits
+ *     long   uuid least significant bits
+ *     byte   type level
+ *     byte   page
+ *     byte   slot
+ *     int    beforeLength (0 = empty slot, nothing follows)
+ *     byte[] before (ItemStack#serializeAsBytes)
+ *     int    afterLength
+ *     byte[] after
+ */
+public class AuditLog {
+
+    public static final int MAGIC = 0x534B4241; // "SKBA"
+    public static final short VERSION = 1;
+
+    private final SkyBackpack plugin;
+    private final File folder;
+    private final boolean enabled;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    // Ring buffer, one entry per index (struct of arrays, allocated once)
+    private final int mask;
+    private final long[] times;
+    private final long[] mostBits;
+    private final long[] leastBits;
+    private final int[] positions;       // type level << 16 | page << 8 | slot
+    private final ItemStack[] before;
+    private final ItemStack[] after;
+    private final AtomicLongArray published; // sequence + 1 once the entry is fully written
+    private final AtomicLong head = new AtomicLong(); // next sequence to claim
+    private volatile long tail;                       // next sequence to drain
+    private final LongAdder dropped = new LongAdder();
+
+    // Writer state, only touched under this lock
+    private final Object writeLock = new Object();
+    private DataOutputStream out;
+    private File current;
+    private long written;
+    private volatile TaskScheduler.Task writerTask;
+
+    public AuditLog(SkyBackpack plugin) {
+        this.plugin = plugin;
+        this.folder = new File(plugin.getDataFolder(), "audit");
+        this.enabled = plugin.getConfig().getBoolean("audit.enabled", true);
+        this.maxFileBytes = Math.max(1, plugin.getConfig().getLong("audit.max-file-mb", 16)) * 1024 * 1024;
+        this.maxFiles = Math.max(1, plugin.getConfig().getInt("audit.max-files", 10));
+
+        int requested = Math.max(1024, plugin.getConfig().getInt("audit.buffer-size", 65536));
+        int capacity = Integer.highestOneBit(requested - 1) << 1; // next power of two
+        this.mask = capacity - 1;
+        this.times = new long[capacity];
+        this.mostBits = new long[capacity];
+        this.leastBits = new long[capacity];
+        this.positions = new int[capacity];
+        this.before = new ItemStack[capacity];
+        this.after = new ItemStack[capacity];
+        this.published = new AtomicLongArray(capacity);
+    }
+
+    // ──────────────────────────────────────────────────
+    // Recording (any thread)
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Record one slot of a page going from {@code previous} to {@code next}
+     * (null = empty). Never blocks: the record is dropped if the buffer is full.
+     */
+    public void record(UUID uuid, BackpackType type, int page, int slot, ItemStack previous, ItemStack next) {
+        if (!enabled) return;
+        long sequence;
+        do {
+            sequence = head.get();
+            if (sequence - tail > mask) {
+                dropped.increment();
+                return;
+            }
+        } while (!head.compareAndSet(sequence, sequence + 1));
+
+        int i = (int) (sequence & mask);
+        times[i] = System.currentTimeMillis();
+        mostBits[i] = uuid.getMostSignificantBits();
+        leastBits[i] = uuid.getLeastSignificantBits();
+        positions[i] = type.getLevel() << 16 | (page & 0xFF) << 8 | (slot & 0xFF);
+        before[i] = previous;
+        after[i] = next;
+        published.lazySet(i, sequence + 1);
+    }
+
+    public long getDropped() { return dropped.sum(); }
+
+    public long getPending() { return head.get() - tail; }
+
+    // ──────────────────────────────────────────────────
+    // Writer
+    // ──────────────────────────────────────────────────
+
+    public void start() {
+        if (!enabled) return;
+        if (!folder.exists()) folder.mkdirs();
+        long interval = Math.max(1, plugin.getConfig().getLong("audit.flush-interval-seconds", 2));
+        writerTask = plugin.getTaskScheduler().runAsyncTimer(this::drain, interval);
+    }
+
+    /**
+     * Stop the writer, write what is left in the buffer and close the file.
+     */
+    public void stop() {
+        if (writerTask != null) {
+            writerTask.cancel();
+            writerTask = null;
+        }
+        if (!enabled) return;
+        drain();
+        synchronized (writeLock) {
+            closeCurrent();
+        }
+        long lost = dropped.sum();
+        if (lost > 0) plugin.getLogger().warning("Journal d'audit : " + lost + " entrée(s) perdue(s) (tampon plein ou erreur d'écriture).");
+    }
+
+    /**
+     * Append every published record to the current file. Stops at the first
+     * entry still being written; it is picked up by the next drain.
+     */
+    public void drain() {
+        synchronized (writeLock) {
+            long sequence = tail;
+            if (sequence == head.get()) return;
+            try {
+                while (true) {
+                    int i = (int) (sequence & mask);
+                    if (published.get(i) != sequence + 1) break;
+
+                    if (out == null || written >= maxFileBytes) rotate();
+                    writeRecord(i);
+                    before[i] = null;
+                    after[i] = null;
+                    tail = ++sequence;
+                }
+                if (out != null) out.flush();
+            } catch (IOException e) {
+                plugin.getLogger().warning("Écriture du journal d'audit impossible : " + e.getMessage());
+                closeCurrent();
+                // Skip what could not be written rather than blocking the producers
+                discard(sequence);
+            }
+        }
+    }
+
+    private void discard(long from) {
+        long sequence = from;
+        while (true) {
+            int i = (int) (sequence & mask);
+            if (published.get(i) != sequence + 1) break;
+            before[i] = null;
+            after[i] = null;
+            sequence++;
+        }
+        dropped.add(sequence - from);
+        tail = sequence;
+    }
+
+    private void writeRecord(int i) throws IOException {
+        int position = positions[i];
+        out.writeLong(times[i]);
+        out.writeLong(mostBits[i]);
+        out.writeLong(leastBits[i]);
+        out.writeByte(position >>> 16);
+        out.writeByte(position >>> 8 & 0xFF);
+        out.writeByte(position & 0xFF);
+        written += 27 + writeItem(before[i]) + writeItem(after[i]);
+    }
+
+    private int writeItem(ItemStack item) throws IOException {
+        if (item == null || item.getType().isAir()) {
+            out.writeInt(0);
+            return 4;
+        }
+        byte[] raw = item.serializeAsBytes();
+        out.writeInt(raw.length);
+        out.write(raw);
+        return 4 + raw.length;
+    }
+
+    // ──────────────────────────────────────────────────
+    // Files
+    // ──────────────────────────────────────────────────
+
+    private void rotate() throws IOException {
+        closeCurrent();
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        current = new File(folder, "audit-" + stamp + ".log");
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(current, true), 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeShort(VERSION);
+        written = 6;
+        prune();
+    }
+
+    private void closeCurrent() {
+        if (out == null) return;
+        try {
+            out.close();
+        } catch (IOException e) {
+            plugin.getLogger().warning("Fermeture de " + current.getName() + " impossible : " + e.getMessage());
+        }
+        out = null;
+    }
+
+    /** Delete the oldest files beyond audit.max-files (names sort by date). */
+    private void prune() {
+        File[] files = folder.listFiles((dir, name) -> name.startsWith("audit-") && name.endsWith(".log"));
+        if (files == null || files.length <= maxFiles) return;
+        Arrays.sort(files);
+        for (int f = 0; f < files.length - maxFiles; f++) {
+            if (!files[f].delete()) plugin.getLogger().warning("Suppression de " + files[f].getName() + " impossible.");
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package skyBackpack;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary shard format (players/&lt;uuid&gt;.dat).
+ *
+ * File:
+ *   int    magic 'SKBP'
+ *   short  version
+ *   byte   typeCount
+ *     UTF    type name
+ *     short  pageCount
+ *       int    pageLength (0 = empty page, nothing follows)
+ *       byte[] page
+ *
+ * Page (self-contained so it can be cached and reused as-is):
+ *   short  recordCount
+ *     short  slot
+ *     int    itemLength
+ *     byte[] item (ItemStack#serializeAsBytes)
+ *
+ * Empty slots are not written at all, and neither are empty pages.
+ * Decoded items are shared through {@link ItemInterner}.
+ */
+public final class BackpackCodec {
+
+    public static final int MAGIC = 0x534B4250; // "SKBP"
+    public static final short VERSION = 1;
+
+    private BackpackCodec() {}
+
+    // ──────────────────────────────────────────────────
+    // Pages
+    // ──────────────────────────────────────────────────
+
+    public static byte[] encodePage(ItemStack[] items) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            int count = 0;
+            for (ItemStack item : items) {
+                if (item != null && !item.getType().isAir()) count++;
+            }
+            out.writeShort(count);
+            for (int slot = 0; slot < items.length; slot++) {
+                ItemStack item = items[slot];
+                if (item == null || item.getType().isAir()) continue;
+                byte[] raw = item.serializeAsBytes();
+                out.writeShort(slot);
+                out.writeInt(raw.length);
+                out.write(raw);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // cannot happen on a byte array
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * True if the items contain nothing worth storing.
+     */
+    public static boolean isEmpty(ItemStack[] items) {
+        for (ItemStack item : items) {
+            if (item != null && !item.getType().isAir()) return false;
+        }
+        return true;
+    }
+
+    /**
+     * True if the encoded page holds no item.
+     */
+    public static boolean isEmptyPage(byte[] page) {
+        return page.length < 2 || (page[0] == 0 && page[1] == 0);
+    }
+
+    public static ItemStack[] decodePage(BackpackType type, byte[] page) throws IOException {
+        return decodePage(type, page, true);
+    }
+
+    /**
+     * @param intern share decoded items through {@link ItemInterner}; false
+     *               deserializes every item (used to benchmark the codec alone)
+     */
+    static ItemStack[] decodePage(BackpackType type, byte[] page, boolean intern) throws IOException {
+        ItemStack[] items = new ItemStack[type.getUsableSlots()];
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(page));
+        int count = in.readUnsignedShort();
+        for (int i = 0; i < count; i++) {
+            int slot = in.readUnsignedShort();
+            byte[] raw = new byte[readLength(in, in.available())];
+            in.readFully(raw);
+            if (slot < items.length) items[slot] = intern ? ItemInterner.decode(raw) : ItemStack.deserializeBytes(raw);
+        }
+        return items;
+    }
+
+    // ──────────────────────────────────────────────────
+    // Cold tier compression
+    // ──────────────────────────────────────────────────
+
+    public static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, bytes.length / 2));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    public static byte[] inflate(byte[] compressed, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] bytes = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = inflater.inflate(bytes, read, length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+                read += n;
+            }
+            if (read != length) throw new IOException("Page compressée tronquée");
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // ──────────────────────────────────────────────────
+    // Shards
+    // ──────────────────────────────────────────────────
+
+    public static Map<BackpackType, List<StoredPage>> read(File file) throws IOException {
+        Map<BackpackType, List<StoredPage>> playerData = new HashMap<>();
+        long size = file.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC) throw new IOException("Pas un shard de backpack : " + file.getName());
+            short version = in.readShort();
+            if (version != VERSION) throw new IOException("Version de shard non supportée " + version + " : " + file.getName());
+
+            int typeCount = in.readUnsignedByte();
+            for (int t = 0; t < typeCount; t++) {
+                String typeName = in.readUTF();
+                int pageCount = in.readUnsignedShort();
+                BackpackType type = typeOf(typeName);
+
+                List<StoredPage> pages = new ArrayList<>(pageCount);
+                for (int p = 0; p < pageCount; p++) {
+                    byte[] page = new byte[readLength(in, size)];
+                    in.readFully(page);
+                    if (type == null) continue;
+                    pages.add(isEmptyPage(page) ? null : StoredPage.loaded(type, page));
+                }
+                trimEmpty(pages);
+                if (type != null && !pages.isEmpty()) playerData.put(type, pages);
+            }
+        }
+        return playerData;
+    }
+
+    /**
+     * Write a shard atomically (temp file + rename). Clean pages reuse their
+     * cached bytes; only dirty pages are re-encoded. Pages are marked
+     * persisted once the file is in place.
+     */
+    public static void write(File file, Map<BackpackType, List<StoredPage>> playerData) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        Map<StoredPage, byte[]> written = new IdentityHashMap<>();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeByte(playerData.size());
+            for (Map.Entry<BackpackType, List<StoredPage>> entry : playerData.entrySet()) {
+                out.writeUTF(entry.getKey().name());
+                out.writeShort(entry.getValue().size());
+                for (StoredPage stored : entry.getValue()) {
+                    if (stored == null) {
+                        out.writeInt(0);
+                        continue;
+                    }
+                    byte[] page = stored.encode();
+                    out.writeInt(page.length);
+                    out.write(page);
+                    written.put(stored, page);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        written.forEach(StoredPage::markPersisted);
+    }
+
+    /**
+     * Read a length prefix, rejecting values a corrupt or truncated file could
+     * hold instead of allocating them.
+     * @param max bytes that can possibly follow
+     */
+    private static int readLength(DataInputStream in, long max) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > max) throw new IOException("Longueur invalide : " + length + " (au plus " + max + ")");
+        return length;
+    }
+
+    /**
+     * Remove trailing empty pages so page lists never end with a null.
+     */
+    public static void trimEmpty(List<StoredPage> pages) {
+        while (!pages.isEmpty() && pages.get(pages.size() - 1) == null) pages.remove(pages.size() - 1);
+    }
+
+    private static BackpackType typeOf(String name) {
+        try {
+            return BackpackType.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
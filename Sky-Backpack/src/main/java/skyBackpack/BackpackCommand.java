@@ -0,0 +1,148 @@
+package skyBackpack;
+
+import org.bukkit.Material;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Admin command: /backpack stats [reset] | compact | find &lt;material&gt; [customModelData]
+ */
+public class BackpackCommand implements CommandExecutor, TabCompleter {
+
+    private static final int FIND_LIMIT = 20;
+
+    private static final List<String> SUBCOMMANDS = Arrays.asList("stats", "compact", "find");
+
+    private final SkyBackpack plugin;
+
+    public BackpackCommand(SkyBackpack plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (args.length == 0) {
+            sender.sendMessage("§cUsage : /" + label + " <stats [reset]|compact|find <material> [cmd]>");
+            return true;
+        }
+
+        switch (args[0].toLowerCase()) {
+            case "stats":
+                return stats(sender, args);
+            case "compact":
+                return compact(sender);
+            case "find":
+                return find(sender, label, args);
+            default:
+                sender.sendMessage("§cSous-commande inconnue. Usage : /" + label + " <stats [reset]|compact|find <material> [cmd]>");
+                return true;
+        }
+    }
+
+    private boolean stats(CommandSender sender, String[] args) {
+        MetricsRegistry metrics = plugin.getMetrics();
+        if (args.length > 1 && args[1].equalsIgnoreCase("reset")) {
+            metrics.reset();
+            sender.sendMessage("§aStatistiques remises à zéro.");
+            return true;
+        }
+        sender.sendMessage("§6SkyBackpack §8- §7statistiques");
+        for (String line : metrics.report()) {
+            sender.sendMessage("§7" + line);
+        }
+        sender.sendMessage("§7items partagés : " + ItemInterner.size());
+        sender.sendMessage("§7" + plugin.getStorageManager().getBudget().report());
+        sender.sendMessage("§7joueurs indexés : " + plugin.getStorageManager().getIndex().size());
+        sender.sendMessage("§7audit : " + plugin.getAuditLog().getPending() + " en attente, " + plugin.getAuditLog().getDropped() + " perdue(s)");
+        return true;
+    }
+
+    private boolean compact(CommandSender sender) {
+        sender.sendMessage("§7Compactage des backpacks en cours...");
+        plugin.getTaskScheduler().runAsync(() -> {
+            try {
+                int compacted = plugin.getStorageManager().compact();
+                sender.sendMessage("§aCompactage terminé : §e" + compacted + " §ajoueur(s) nettoyé(s).");
+            } catch (IOException e) {
+                plugin.getLogger().severe("Compactage impossible : " + e.getMessage());
+                sender.sendMessage("§cCompactage impossible, voir la console.");
+            }
+        });
+        return true;
+    }
+
+    /**
+     * Players holding a material, largest amounts first. Only reads the
+     * index, so it costs the number of holders whatever the population.
+     */
+    private boolean find(CommandSender sender, String label, String[] args) {
+        if (args.length < 2) {
+            sender.sendMessage("§cUsage : /" + label + " find <material> [customModelData]");
+            return true;
+        }
+        Material material = Material.matchMaterial(args[1]);
+        if (material == null) {
+            sender.sendMessage("§cMatériau inconnu : " + args[1]);
+            return true;
+        }
+        Integer customModelData = null;
+        if (args.length > 2) {
+            try {
+                customModelData = Integer.parseInt(args[2]);
+            } catch (NumberFormatException e) {
+                sender.sendMessage("§cCustomModelData invalide : " + args[2]);
+                return true;
+            }
+        }
+
+        MaterialIndex index = plugin.getStorageManager().getIndex();
+        if (!index.isEnabled()) {
+            sender.sendMessage("§cL'index des items est désactivé (index.enabled).");
+            return true;
+        }
+        List<Map.Entry<UUID, Long>> holders = new ArrayList<>(index.find(material, customModelData).entrySet());
+        String what = material.name() + (customModelData != null ? " (cmd " + customModelData + ")" : "");
+        if (holders.isEmpty()) {
+            sender.sendMessage("§7Aucun backpack ne contient §e" + what + "§7 (" + index.size() + " joueur(s) indexés).");
+            return true;
+        }
+        holders.sort(Map.Entry.<UUID, Long>comparingByValue().reversed());
+
+        long total = 0;
+        for (Map.Entry<UUID, Long> entry : holders) total += entry.getValue();
+        sender.sendMessage("§6" + what + " §8- §e" + total + " §7au total chez §e" + holders.size() + " §7joueur(s)");
+        for (Map.Entry<UUID, Long> entry : holders.subList(0, Math.min(FIND_LIMIT, holders.size()))) {
+            String name = plugin.getServer().getOfflinePlayer(entry.getKey()).getName();
+            sender.sendMessage("§7- §f" + (name != null ? name : entry.getKey().toString()) + " §7: §e" + entry.getValue());
+        }
+        if (holders.size() > FIND_LIMIT) sender.sendMessage("§7... et " + (holders.size() - FIND_LIMIT) + " autre(s).");
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        List<String> result = new ArrayList<>();
+        if (args.length == 1) {
+            for (String sub : SUBCOMMANDS) {
+                if (sub.startsWith(args[0].toLowerCase())) result.add(sub);
+            }
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("stats")) {
+            if ("reset".startsWith(args[1].toLowerCase())) result.add("reset");
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("find")) {
+            String prefix = args[1].toUpperCase();
+            for (Material material : Material.values()) {
+                if (material.name().startsWith(prefix)) result.add(material.name().toLowerCase());
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,26 @@
+package skyBackpack;
+
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
+
+/**
+ * Holder of every backpack inventory. Event handlers recognise a backpack by
+ * an instanceof check on the top inventory's holder and reach the session
+ * directly, without a map lookup or inventory comparison.
+ */
+public final class BackpackHolder implements InventoryHolder {
+
+    private Inventory inventory;
+    private volatile GUIManager.BackpackSession session; // null once closed
+
+    BackpackHolder() {}
+
+    void attach(Inventory inventory) { this.inventory = inventory; }
+
+    @Override
+    public Inventory getInventory() { return inventory; }
+
+    public GUIManager.BackpackSession getSession() { return session; }
+
+    void setSession(GUIManager.BackpackSession session) { this.session = session; }
+}
@@ -5,12 +5,17 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.inventory.*;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.inventory.EquipmentSlot;
 import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryHolder;
 import org.bukkit.inventory.ItemStack;
 
+import java.io.IOException;
 import java.util.UUID;
 
 public class BackpackListener implements Listener {
@@ -21,6 +26,46 @@ public class BackpackListener implements Listener {
         this.plugin = plugin;
     }
 
+    // ──────────────────────────────────────────────────
+    // Pre-login – prefetch the player's shard off the main thread
+    // ──────────────────────────────────────────────────
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) return;
+        try {
+            plugin.getStorageManager().preload(event.getUniqueId());
+        } catch (IOException e) {
+            // Letting the player in would show (and then save) empty backpacks
+            plugin.getLogger().severe("Données illisibles pour " + event.getUniqueId() + ", connexion refusée : " + e.getMessage());
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_OTHER,
+                    "§cTes backpacks n'ont pas pu être chargés. Réessaie dans un instant.");
+        }
+    }
+
+    // ──────────────────────────────────────────────────
+    // Login denied after pre-login (ban, whitelist, full server) – no quit will follow
+    // ──────────────────────────────────────────────────
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onLogin(PlayerLoginEvent event) {
+        if (event.getResult() == PlayerLoginEvent.Result.ALLOWED) return;
+        plugin.getStorageManager().unload(event.getPlayer().getUniqueId());
+    }
+
+    // ──────────────────────────────────────────────────
+    // Join – tag backpacks created before the persistent tag
+    // ──────────────────────────────────────────────────
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onJoin(PlayerJoinEvent event) {
+        Inventory inv = event.getPlayer().getInventory();
+        for (int slot = 0; slot < inv.getSize(); slot++) {
+            ItemStack item = inv.getItem(slot);
+            if (BackpackType.tagLegacy(item)) inv.setItem(slot, item);
+        }
+    }
+
     // ──────────────────────────────────────────────────
     // Open backpack on right-click
     // ──────────────────────────────────────────────────
@@ -36,6 +81,7 @@ public class BackpackListener implements Listener {
 
         BackpackType type = BackpackType.fromItem(item);
         if (type == null) return;
+        if (BackpackType.tagLegacy(item)) player.getInventory().setItemInMainHand(item);
 
         event.setCancelled(true);
         plugin.getGUIManager().openBackpack(player, type, 0);
@@ -47,22 +93,32 @@ public class BackpackListener implements Listener {
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryClick(InventoryClickEvent event) {
+        long start = System.nanoTime();
+        try {
+            handleClick(event);
+        } finally {
+            plugin.getMetrics().record(Metric.INVENTORY_CLICK, start);
+        }
+    }
+
+    private void handleClick(InventoryClickEvent event) {
         if (!(event.getWhoClicked() instanceof Player)) return;
         Player player = (Player) event.getWhoClicked();
-        UUID uuid = player.getUniqueId();
 
-        GUIManager gui = plugin.getGUIManager();
-        if (!gui.hasSession(uuid)) return;
+        // Backpack inventories carry their session in the holder
+        Inventory topInv = event.getInventory();
+        InventoryHolder holder = topInv.getHolder(false);
+        if (!(holder instanceof BackpackHolder)) return;
+        GUIManager.BackpackSession session = ((BackpackHolder) holder).getSession();
+        if (session == null) return;
 
-        GUIManager.BackpackSession session = gui.getSession(uuid);
+        GUIManager gui = plugin.getGUIManager();
         BackpackType type = session.getType();
-        Inventory topInv = session.getInventory();
 
-        // Make sure the click is in our inventory
-        boolean isTopInv = event.getClickedInventory() != null
-                && event.getClickedInventory().equals(topInv);
-        boolean isBottomInv = event.getClickedInventory() != null
-                && event.getClickedInventory().equals(player.getInventory());
+        // Raw slots below the top size are in our inventory, the rest in the player's
+        int rawSlot = event.getRawSlot();
+        boolean isTopInv = rawSlot >= 0 && rawSlot < topInv.getSize();
+        boolean isBottomInv = rawSlot >= topInv.getSize();
 
         int slot = event.getSlot();
         ClickType click = event.getClick();
@@ -80,7 +136,6 @@ public class BackpackListener implements Listener {
 
                 // Handle arrow navigation
                 if (gui.isArrowSlot(type, slot)) {
-                    gui.saveCurrentPage(player);
                     int currentPage = session.getPage();
                     int totalPages = type.getTotalPages();
                     int newPage;
@@ -91,12 +146,9 @@ public class BackpackListener implements Listener {
                     } else {
                         return;
                     }
-                    // Re-open on next tick to avoid inventory glitch
+                    // Swap the page on next tick, once the cancelled click is resolved
                     final int fp = newPage;
-                    plugin.getServer().getScheduler().runTask(plugin, () -> {
-                        gui.removeSession(uuid);
-                        gui.openBackpack(player, type, fp);
-                    });
+                    plugin.getTaskScheduler().runForPlayer(player, () -> gui.switchPage(player, fp));
                 }
                 return;
             }
@@ -139,16 +191,26 @@ public class BackpackListener implements Listener {
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onInventoryDrag(InventoryDragEvent event) {
+        long start = System.nanoTime();
+        try {
+            handleDrag(event);
+        } finally {
+            plugin.getMetrics().record(Metric.INVENTORY_DRAG, start);
+        }
+    }
+
+    private void handleDrag(InventoryDragEvent event) {
         if (!(event.getWhoClicked() instanceof Player)) return;
         Player player = (Player) event.getWhoClicked();
-        UUID uuid = player.getUniqueId();
 
-        GUIManager gui = plugin.getGUIManager();
-        if (!gui.hasSession(uuid)) return;
+        Inventory topInv = event.getInventory();
+        InventoryHolder holder = topInv.getHolder(false);
+        if (!(holder instanceof BackpackHolder)) return;
+        GUIManager.BackpackSession session = ((BackpackHolder) holder).getSession();
+        if (session == null) return;
 
-        GUIManager.BackpackSession session = gui.getSession(uuid);
+        GUIManager gui = plugin.getGUIManager();
         BackpackType type = session.getType();
-        Inventory topInv = session.getInventory();
         int topSize = topInv.getSize();
 
         // Check if any dragged slot is a UI slot in the top inventory
@@ -189,7 +251,7 @@ public class BackpackListener implements Listener {
     }
 
     // ──────────────────────────────────────────────────
-    // PlayerQuit – save and clean up
+    // PlayerQuit – save, clean up and evict from memory
     // ──────────────────────────────────────────────────
 
     @EventHandler
@@ -202,6 +264,6 @@ public class BackpackListener implements Listener {
             gui.saveCurrentPage(player);
             gui.removeSession(uuid);
         }
-        plugin.getStorageManager().autosave();
+        plugin.getStorageManager().unload(uuid);
     }
 }
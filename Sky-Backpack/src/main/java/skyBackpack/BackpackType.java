@@ -1,26 +1,55 @@
 package skyBackpack;
 
 import org.bukkit.Material;
+import org.bukkit.NamespacedKey;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
+import org.bukkit.persistence.PersistentDataType;
 
 public enum BackpackType {
 
-    BACKPACK_1(1, 4510, 27, 1, "§6Backpack §e1"),
-    BACKPACK_2(2, 4511, 40, 2, "§6Backpack §e2"),
-    BACKPACK_3(3, 4512, 54, 3, "§6Backpack §e3");
+    BACKPACK_1(1, 4510, 26, 1, 1, "§6Backpack §e1"),
+    BACKPACK_2(2, 4511, 40, 2, 3, "§6Backpack §e2"),
+    BACKPACK_3(3, 4512, 53, 3, 6, "§6Backpack §e3");
+
+    /** Persistent tag holding the backpack level on the item. */
+    public static final NamespacedKey KEY = NamespacedKey.fromString("skybackpack:level");
+
+    // Lookup tables, filled once after the constants are created
+    private static final BackpackType[] BY_LEVEL;
+    private static final BackpackType[] BY_CMD;
+    private static final int MIN_CMD;
+
+    static {
+        BackpackType[] types = values();
+        int maxLevel = 0, minCmd = Integer.MAX_VALUE, maxCmd = Integer.MIN_VALUE;
+        for (BackpackType type : types) {
+            maxLevel = Math.max(maxLevel, type.level);
+            minCmd = Math.min(minCmd, type.customModelData);
+            maxCmd = Math.max(maxCmd, type.customModelData);
+        }
+        BY_LEVEL = new BackpackType[maxLevel + 1];
+        BY_CMD = new BackpackType[maxCmd - minCmd + 1];
+        MIN_CMD = minCmd;
+        for (BackpackType type : types) {
+            BY_LEVEL[type.level] = type;
+            BY_CMD[type.customModelData - minCmd] = type;
+        }
+    }
 
     private final int level;
     private final int customModelData;
-    private final int usableSlots;
+    private final int usableSlots;   // per page, the last slot holds the arrow
     private final int inventoryRows; // rows of 9
+    private final int pages;
     private final String displayName;
 
-    BackpackType(int level, int customModelData, int usableSlots, int inventoryRows, String displayName) {
+    BackpackType(int level, int customModelData, int usableSlots, int inventoryRows, int pages, String displayName) {
         this.level = level;
         this.customModelData = customModelData;
         this.usableSlots = usableSlots;
         this.inventoryRows = inventoryRows;
+        this.pages = pages;
         this.displayName = displayName;
     }
 
@@ -43,15 +72,10 @@ public enum BackpackType {
     }
 
     /**
-     * Number of pages needed for this backpack type.
+     * Number of pages for this backpack type. Same as {@link #getTotalPages()}.
      */
     public int getPageCount() {
-        switch (this) {
-            case BACKPACK_1: return 1;
-            case BACKPACK_2: return 1;
-            case BACKPACK_3: return 1;
-            default: return 1;
-        }
+        return pages;
     }
 
     /**
@@ -79,10 +103,9 @@ public enum BackpackType {
     /**
      * Returns the total number of usable item pages
      * given that each page holds usableSlots items.
-     * For now every backpack has exactly 1 page.
      */
     public int getTotalPages() {
-        return 1;
+        return pages;
     }
 
     /**
@@ -93,22 +116,53 @@ public enum BackpackType {
         ItemMeta meta = item.getItemMeta();
         meta.setDisplayName(displayName);
         meta.setCustomModelData(customModelData);
+        meta.getPersistentDataContainer().set(KEY, PersistentDataType.BYTE, (byte) level);
         item.setItemMeta(meta);
         return item;
     }
 
     /**
      * Detect the BackpackType from an ItemStack. Returns null if not a backpack.
+     *
+     * Tagged items are resolved from the persistent tag, read through the
+     * item's data view without copying its meta. Items created before the tag
+     * existed fall back to the custom model data.
      */
     public static BackpackType fromItem(ItemStack item) {
         if (item == null || item.getType() != Material.PAPER) return null;
         if (!item.hasItemMeta()) return null;
+
+        Byte level = item.getPersistentDataContainer().get(KEY, PersistentDataType.BYTE);
+        if (level != null) return byLevel(level);
+        return fromLegacy(item);
+    }
+
+    public static BackpackType byLevel(int level) {
+        return level >= 0 && level < BY_LEVEL.length ? BY_LEVEL[level] : null;
+    }
+
+    public static BackpackType byCustomModelData(int cmd) {
+        int index = cmd - MIN_CMD;
+        return index >= 0 && index < BY_CMD.length ? BY_CMD[index] : null;
+    }
+
+    /**
+     * Add the persistent tag to a backpack created before it existed.
+     * Returns true if the item was changed.
+     */
+    public static boolean tagLegacy(ItemStack item) {
+        if (item == null || item.getType() != Material.PAPER || !item.hasItemMeta()) return false;
+        if (item.getPersistentDataContainer().has(KEY)) return false;
+
+        BackpackType type = fromLegacy(item);
+        if (type == null) return false;
+        item.editMeta(meta -> meta.getPersistentDataContainer().set(KEY, PersistentDataType.BYTE, (byte) type.level));
+        return true;
+    }
+
+    private static BackpackType fromLegacy(ItemStack item) {
         ItemMeta meta = item.getItemMeta();
         if (!meta.hasCustomModelData()) return null;
-        int cmd = meta.getCustomModelData();
-        for (BackpackType type : values()) {
-            if (type.customModelData == cmd) return type;
-        }
-        return null;
+        return byCustomModelData(meta.getCustomModelData());
     }
 }
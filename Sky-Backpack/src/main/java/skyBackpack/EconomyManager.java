@@ -4,40 +4,73 @@ import fr.chiroyuki.skyCore.api.economy.EconomyService;
 import fr.chiroyuki.skyCore.impl.SkyCoreAPIProvider;
 import org.bukkit.entity.Player;
 
+/**
+ * Access to the SkyCore economy. The service handle is resolved once and
+ * cached. Calls may reach a database, so callers on a server thread should
+ * run them through {@link TaskScheduler#runAsync}.
+ */
 public class EconomyManager {
 
     private final SkyBackpack plugin;
+    private volatile EconomyService service;
 
     public EconomyManager(SkyBackpack plugin) {
         this.plugin = plugin;
     }
 
     public boolean setup() {
-        try {
-            return SkyCoreAPIProvider.get() != null && SkyCoreAPIProvider.get().economy() != null;
-        } catch (Exception e) {
-            return false;
-        }
+        return eco() != null;
     }
 
     public boolean isAvailable() {
+        return eco() != null;
+    }
+
+    /**
+     * Cached service, resolved again only while it is missing
+     * (e.g. SkyCore enabled after us).
+     */
+    private EconomyService eco() {
+        EconomyService cached = service;
+        if (cached != null) return cached;
         try {
-            return SkyCoreAPIProvider.get() != null && SkyCoreAPIProvider.get().economy() != null;
+            if (SkyCoreAPIProvider.get() == null) return null;
+            cached = SkyCoreAPIProvider.get().economy();
         } catch (Exception e) {
-            return false;
+            return null;
         }
+        service = cached;
+        return cached;
     }
 
-    private EconomyService eco() {
-        return SkyCoreAPIProvider.get().economy();
+    /**
+     * Use the given service instead of SkyCore's. Only meant for the load
+     * harness, which runs on a mock server without SkyCore.
+     */
+    void useService(EconomyService service) {
+        this.service = service;
     }
 
     public boolean has(Player player, double amount) {
-        return eco().has(player, amount);
+        long start = System.nanoTime();
+        try {
+            return eco().has(player, amount);
+        } finally {
+            plugin.getMetrics().record(Metric.ECONOMY_HAS, start);
+        }
     }
 
     public boolean withdraw(Player player, double amount) {
-        return eco().withdraw(player, amount);
+        long start = System.nanoTime();
+        try {
+            return eco().withdraw(player, amount);
+        } finally {
+            plugin.getMetrics().record(Metric.ECONOMY_WITHDRAW, start);
+        }
+    }
+
+    public boolean deposit(Player player, double amount) {
+        return eco().deposit(player, amount);
     }
 
     public String format(double amount) {
@@ -7,9 +7,13 @@ import org.bukkit.inventory.Inventory;
 import org.bukkit.inventory.ItemStack;
 import org.bukkit.inventory.meta.ItemMeta;
 
-import java.util.HashMap;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Manages open backpack GUI sessions.
@@ -18,8 +22,14 @@ public class GUIManager {
 
     private final SkyBackpack plugin;
 
-    // Active sessions: playerUUID -> session info
-    private final Map<UUID, BackpackSession> sessions = new HashMap<>();
+    // Active sessions: playerUUID -> session info (touched from each player's region thread)
+    private final Map<UUID, BackpackSession> sessions = new ConcurrentHashMap<>();
+
+    // Prebuilt layouts: [type ordinal][page]
+    private final GuiTemplate[][] templates;
+
+    // UI slots per type, bit n set = slot n is an arrow or filler: [type ordinal]
+    private final long[] uiMasks;
 
     // ── Filler / UI items ──────────────────────────────
     private static final ItemStack FILLER;
@@ -47,48 +57,157 @@ public class GUIManager {
 
     public GUIManager(SkyBackpack plugin) {
         this.plugin = plugin;
+        this.templates = buildTemplates();
+        this.uiMasks = new long[BackpackType.values().length];
+        for (BackpackType type : BackpackType.values()) {
+            long mask = 0L;
+            for (int s = 0; s < type.getInventorySize(); s++) {
+                if (isArrowSlot(type, s) || isFillerSlot(type, s)) mask |= 1L << s;
+            }
+            uiMasks[type.ordinal()] = mask;
+        }
     }
 
     // ──────────────────────────────────────────────────
-    // Open / refresh
+    // Templates
     // ──────────────────────────────────────────────────
 
-    public void openBackpack(Player player, BackpackType type, int page) {
-        StorageManager storage = plugin.getStorageManager();
-        int totalPages = type.getTotalPages();
-        page = Math.max(0, Math.min(page, totalPages - 1));
-
-        String title = type.getDisplayName() + " §8- §7Page §f" + (page + 1) + "§7/§f" + totalPages;
-        Inventory inv = Bukkit.createInventory(null, type.getInventorySize(), title);
-
-        // Fill usable slots with stored items
-        ItemStack[] stored = storage.getPage(player.getUniqueId(), type, page);
-        int usable = type.getUsableSlots();
-        for (int s = 0; s < usable && s < stored.length; s++) {
-            inv.setItem(s, stored[s]);
+    private GuiTemplate[][] buildTemplates() {
+        GuiTemplate[][] result = new GuiTemplate[BackpackType.values().length][];
+        for (BackpackType type : BackpackType.values()) {
+            int totalPages = type.getTotalPages();
+            result[type.ordinal()] = new GuiTemplate[totalPages];
+            for (int page = 0; page < totalPages; page++) {
+                result[type.ordinal()][page] = buildTemplate(type, page, totalPages);
+            }
         }
+        return result;
+    }
+
+    private GuiTemplate buildTemplate(BackpackType type, int page, int totalPages) {
+        // Same title on every page: changing it would make the client reopen the window
+        String title = type.getDisplayName();
+        ItemStack[] layout = new ItemStack[type.getInventorySize()];
 
         // For BP2 (45 slots, 40 usable): block slots 40-43 and 44 (arrow)
-        if (type == BackpackType.BACKPACK_2) {
-            for (int s = 40; s <= 43; s++) {
-                inv.setItem(s, FILLER.clone());
-            }
+        for (int s = 0; s < layout.length; s++) {
+            if (isFillerSlot(type, s)) layout[s] = FILLER;
         }
 
         // Arrow in last slot (slot inventorySize - 1)
         int arrowSlot = type.getInventorySize() - 1;
         if (totalPages > 1) {
-            inv.setItem(arrowSlot, page == 0 ? ARROW_NEXT.clone() : ARROW_PREV.clone());
+            layout[arrowSlot] = pageArrow(page < totalPages - 1 ? ARROW_NEXT : ARROW_PREV, page, totalPages);
         } else {
             // Single page: still show arrow as visual but pages won't change
-            inv.setItem(arrowSlot, FILLER.clone());
+            layout[arrowSlot] = FILLER;
+        }
+
+        // Stored items go in the usable slots before the first UI slot
+        int itemSlots = 0;
+        while (itemSlots < type.getUsableSlots() && itemSlots < layout.length && layout[itemSlots] == null) {
+            itemSlots++;
         }
+        return new GuiTemplate(title, layout, itemSlots);
+    }
+
+    /** Arrow showing the current page number, since the title does not. */
+    private static ItemStack pageArrow(ItemStack base, int page, int totalPages) {
+        ItemStack arrow = base.clone();
+        ItemMeta meta = arrow.getItemMeta();
+        meta.setLore(java.util.Arrays.asList("§7Page §f" + (page + 1) + "§7/§f" + totalPages,
+                "§7Clic gauche : page suivante", "§7Clic droit : page précédente"));
+        arrow.setItemMeta(meta);
+        return arrow;
+    }
+
+    public GuiTemplate getTemplate(BackpackType type, int page) {
+        return templates[type.ordinal()][page];
+    }
+
+    // ──────────────────────────────────────────────────
+    // Open / refresh
+    // ──────────────────────────────────────────────────
+
+    public void openBackpack(Player player, BackpackType type, int page) {
+        long start = System.nanoTime();
+        StorageManager storage = plugin.getStorageManager();
+        int totalPages = type.getTotalPages();
+        page = Math.max(0, Math.min(page, totalPages - 1));
+
+        ItemStack[] stored;
+        try {
+            stored = storage.getPage(player.getUniqueId(), type, page);
+        } catch (UncheckedIOException e) {
+            plugin.getLogger().severe("Page illisible pour " + player.getName() + " : " + e.getCause().getMessage());
+            player.sendMessage("§cCette page de ton backpack est illisible, contacte un administrateur.");
+            return;
+        }
+
+        GuiTemplate template = getTemplate(type, page);
+        BackpackHolder holder = new BackpackHolder();
+        Inventory inv = Bukkit.createInventory(holder, template.getSize(), template.getTitle());
+        holder.attach(inv);
+        inv.setContents(template.render(stored));
 
         // Register session
-        int finalPage = page;
-        sessions.put(player.getUniqueId(), new BackpackSession(type, finalPage, inv));
+        BackpackSession session = new BackpackSession(type, page, inv);
+        BackpackSession previous = sessions.put(player.getUniqueId(), session);
+        if (previous != null) holderOf(previous).setSession(null);
+        holder.setSession(session);
 
         player.openInventory(inv);
+        plugin.getMetrics().record(Metric.OPEN_BACKPACK, start);
+    }
+
+    /**
+     * Show another page in the inventory the player already has open.
+     * The current page is saved first, then only the slots whose content
+     * differs are rewritten. All pages share the same title (the page
+     * number is on the arrow), so the window is never reopened and only
+     * the changed slots are sent to the client.
+     * Does nothing if the player closed the backpack in the meantime.
+     */
+    public void switchPage(Player player, int page) {
+        long start = System.nanoTime();
+        UUID uuid = player.getUniqueId();
+        BackpackSession session = sessions.get(uuid);
+        if (session == null) return;
+
+        BackpackType type = session.getType();
+        page = Math.max(0, Math.min(page, type.getTotalPages() - 1));
+        if (page == session.getPage()) return;
+
+        Inventory inv = session.getInventory();
+        BackpackHolder holder = holderOf(session);
+        if (player.getOpenInventory().getTopInventory().getHolder(false) != holder) return;
+
+        StorageManager storage = plugin.getStorageManager();
+        ItemStack[] stored;
+        try {
+            stored = storage.getPage(uuid, type, page);
+        } catch (UncheckedIOException e) {
+            plugin.getLogger().severe("Page illisible pour " + player.getName() + " : " + e.getCause().getMessage());
+            player.sendMessage("§cCette page de ton backpack est illisible, contacte un administrateur.");
+            return;
+        }
+
+        // Timed as save_page on its own, so it is not counted twice per tick
+        long saving = System.nanoTime();
+        saveCurrentPage(player);
+        start += System.nanoTime() - saving;
+
+        BackpackSession next = new BackpackSession(type, page, inv);
+        if (!sessions.replace(uuid, session, next)) return;
+        holder.setSession(next);
+        storage.releasePage(uuid, type, session.getPage());
+
+        GuiTemplate template = getTemplate(type, page);
+        ItemStack[] contents = template.render(stored);
+        for (int s = 0; s < contents.length; s++) {
+            if (!Objects.equals(inv.getItem(s), contents[s])) inv.setItem(s, contents[s]);
+        }
+        plugin.getMetrics().record(Metric.SWITCH_PAGE, start);
     }
 
     // ──────────────────────────────────────────────────
@@ -97,10 +216,22 @@ public class GUIManager {
 
     public BackpackSession getSession(UUID uuid) { return sessions.get(uuid); }
 
-    public void removeSession(UUID uuid) { sessions.remove(uuid); }
+    /**
+     * Forget the session; the page it showed is only kept encoded from now on.
+     */
+    public void removeSession(UUID uuid) {
+        BackpackSession session = sessions.remove(uuid);
+        if (session == null) return;
+        holderOf(session).setSession(null);
+        plugin.getStorageManager().releasePage(uuid, session.getType(), session.getPage());
+    }
 
     public boolean hasSession(UUID uuid) { return sessions.containsKey(uuid); }
 
+    private static BackpackHolder holderOf(BackpackSession session) {
+        return (BackpackHolder) session.getInventory().getHolder(false);
+    }
+
     // ──────────────────────────────────────────────────
     // UI item checks
     // ──────────────────────────────────────────────────
@@ -116,8 +247,11 @@ public class GUIManager {
         return false;
     }
 
+    /**
+     * Single bit test against the precomputed mask of the type.
+     */
     public boolean isUISlot(BackpackType type, int slot) {
-        return isArrowSlot(type, slot) || isFillerSlot(type, slot);
+        return slot >= 0 && slot < 64 && (uiMasks[type.ordinal()] >>> slot & 1L) != 0;
     }
 
     public ItemStack getFiller() { return FILLER.clone(); }
@@ -127,6 +261,7 @@ public class GUIManager {
     // ──────────────────────────────────────────────────
 
     public void saveCurrentPage(Player player) {
+        long start = System.nanoTime();
         BackpackSession session = sessions.get(player.getUniqueId());
         if (session == null) return;
 
@@ -134,17 +269,42 @@ public class GUIManager {
         int page = session.getPage();
         Inventory inv = session.getInventory();
         int usable = type.getUsableSlots();
+        StorageManager storage = plugin.getStorageManager();
 
-        ItemStack[] stored = new ItemStack[usable];
+        // Only slots that differ from the stored page are cloned; the page
+        // array is copied on the first change so stored arrays stay immutable
+        AuditLog audit = plugin.getAuditLog();
+        ItemStack[] stored = storage.getPage(player.getUniqueId(), type, page);
+        ItemStack[] updated = null;
         for (int s = 0; s < usable; s++) {
             ItemStack item = inv.getItem(s);
-            if (item != null && !item.getType().isAir()) {
-                stored[s] = item.clone();
-            }
+            if (item != null && item.getType().isAir()) item = null;
+            ItemStack previous = s < stored.length ? stored[s] : null;
+            if (Objects.equals(previous, item)) continue;
+
+            if (updated == null) updated = Arrays.copyOf(stored, usable);
+            updated[s] = item == null ? null : item.clone();
+            audit.record(player.getUniqueId(), type, page, s, previous, updated[s]);
         }
 
-        plugin.getStorageManager().setPage(player.getUniqueId(), type, page, stored);
-        plugin.getStorageManager().autosave();
+        if (updated != null) {
+            storage.setPage(player.getUniqueId(), type, page, updated);
+            storage.autosave();
+        }
+        plugin.getMetrics().record(Metric.SAVE_PAGE, start);
+    }
+
+    /**
+     * Save and close every open backpack. Called on disable, before the
+     * final flush, so pages being edited are part of it.
+     */
+    public void saveAllSessions() {
+        for (UUID uuid : new ArrayList<>(sessions.keySet())) {
+            Player player = plugin.getServer().getPlayer(uuid);
+            if (player != null) saveCurrentPage(player);
+            removeSession(uuid);
+            if (player != null) player.closeInventory();
+        }
     }
 
     // ──────────────────────────────────────────────────
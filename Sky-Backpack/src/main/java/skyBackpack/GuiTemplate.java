@@ -0,0 +1,37 @@
+package skyBackpack;
+
+import org.bukkit.inventory.ItemStack;
+
+/**
+ * Prebuilt layout of one backpack page: title, filler and arrow items.
+ *
+ * Built once per BackpackType and page by {@link GUIManager}. Rendering only
+ * clones the layout array and copies the stored items into it, so opening a
+ * backpack is a single setContents call. UI items are shared instances and
+ * must never be modified; the inventory copies them on assignment.
+ */
+public final class GuiTemplate {
+
+    private final String title;
+    private final ItemStack[] layout; // UI items, null where stored items go
+    private final int itemSlots;      // leading slots filled from storage
+
+    GuiTemplate(String title, ItemStack[] layout, int itemSlots) {
+        this.title = title;
+        this.layout = layout;
+        this.itemSlots = itemSlots;
+    }
+
+    public String getTitle() { return title; }
+
+    public int getSize() { return layout.length; }
+
+    /**
+     * Full inventory contents: the layout with the stored items merged in.
+     */
+    public ItemStack[] render(ItemStack[] stored) {
+        ItemStack[] contents = layout.clone();
+        System.arraycopy(stored, 0, contents, 0, Math.min(itemSlots, stored.length));
+        return contents;
+    }
+}
@@ -0,0 +1,89 @@
+package skyBackpack;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shares one ItemStack instance between every stored slot holding the same
+ * serialized item (a full stack of cobblestone on thousands of pages is
+ * decoded once and kept once).
+ *
+ * Only for stored pages, whose stacks are never modified in place: opening a
+ * page copies them into the live inventory, and saving clones what changed.
+ * Instances are weakly held and disappear once no page references them.
+ */
+public final class ItemInterner {
+
+    private static final ConcurrentHashMap<Key, Ref> CANONICAL = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<ItemStack> QUEUE = new ReferenceQueue<>();
+
+    private ItemInterner() {}
+
+    /**
+     * Canonical stack for the given bytes (ItemStack#serializeAsBytes),
+     * deserialized only if no live instance exists yet.
+     */
+    public static ItemStack decode(byte[] raw) {
+        purge();
+        Key key = new Key(raw);
+        Ref ref = CANONICAL.get(key);
+        ItemStack item = ref == null ? null : ref.get();
+        if (item != null) return item;
+
+        ItemStack decoded = ItemStack.deserializeBytes(raw);
+        Ref fresh = new Ref(key, decoded);
+        while (true) {
+            Ref existing = CANONICAL.putIfAbsent(key, fresh);
+            if (existing == null) return decoded;
+            // Another thread decoded the same item meanwhile
+            ItemStack other = existing.get();
+            if (other != null) return other;
+            if (CANONICAL.replace(key, existing, fresh)) return decoded;
+        }
+    }
+
+    /** Number of distinct stacks currently shared. */
+    public static int size() {
+        purge();
+        return CANONICAL.size();
+    }
+
+    private static void purge() {
+        Object cleared;
+        while ((cleared = QUEUE.poll()) != null) {
+            Ref ref = (Ref) cleared;
+            CANONICAL.remove(ref.key, ref);
+        }
+    }
+
+    private static final class Ref extends WeakReference<ItemStack> {
+        final Key key;
+
+        Ref(Key key, ItemStack item) {
+            super(item, QUEUE);
+            this.key = key;
+        }
+    }
+
+    private static final class Key {
+        final byte[] bytes;
+        final int hash;
+
+        Key(byte[] bytes) {
+            this.bytes = bytes;
+            this.hash = Arrays.hashCode(bytes);
+        }
+
+        @Override
+        public int hashCode() { return hash; }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && hash == ((Key) o).hash && Arrays.equals(bytes, ((Key) o).bytes);
+        }
+    }
+}
@@ -0,0 +1,282 @@
+package skyBackpack;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of page mutations (journal.log).
+ *
+ * Record:
+ *   int    payloadLength
+ *   int    crc32(payload)
+ *   payload:
+ *     long   uuid most significant bits
+ *     long   uuid least significant bits
+ *     UTF    type name
+ *     short  page
+ *     int    pageLength
+ *     byte[] page (same encoding as {@link BackpackCodec#encodePage})
+ *
+ * Records are appended sequentially on a dedicated thread. Compaction rotates
+ * the journal to journal.log.old, lets the writer snapshot every dirty shard,
+ * then deletes the rotated file. On startup both files are replayed on top of
+ * the shards; a torn or corrupt tail record stops the replay.
+ */
+public class Journal {
+
+    private final SkyBackpack plugin;
+    private final File file;
+    private final File rotated;
+    private final boolean fsync;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "SkyBackpack-Journal");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private FileChannel channel;
+
+    public Journal(SkyBackpack plugin, boolean fsync) {
+        this.plugin = plugin;
+        this.file = new File(plugin.getDataFolder(), "journal.log");
+        this.rotated = new File(plugin.getDataFolder(), "journal.log.old");
+        this.fsync = fsync;
+    }
+
+    public void open() throws IOException {
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    // ──────────────────────────────────────────────────
+    // Append
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Queue a record for the given page. Only costs an enqueue on the calling
+     * thread; the page is encoded on the journal thread, which also fills the
+     * page's cached bytes for the next shard write.
+     */
+    public void append(UUID uuid, BackpackType type, int page, StoredPage stored) {
+        executor.execute(() -> {
+            try {
+                write(encodeRecord(uuid, type, page, stored.encode()));
+            } catch (IOException e) {
+                plugin.getLogger().severe("Écriture du journal impossible : " + e.getMessage());
+            }
+        });
+    }
+
+    private void write(ByteBuffer record) throws IOException {
+        while (record.hasRemaining()) channel.write(record);
+        if (fsync) channel.force(false);
+    }
+
+    private static ByteBuffer encodeRecord(UUID uuid, BackpackType type, int page, byte[] bytes) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(bytes.length + 48);
+        try (DataOutputStream out = new DataOutputStream(payload)) {
+            out.writeLong(uuid.getMostSignificantBits());
+            out.writeLong(uuid.getLeastSignificantBits());
+            out.writeUTF(type.name());
+            out.writeShort(page);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        byte[] raw = payload.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(raw);
+
+        ByteBuffer record = ByteBuffer.allocate(8 + raw.length);
+        record.putInt(raw.length).putInt((int) crc.getValue()).put(raw);
+        record.flip();
+        return record;
+    }
+
+    // ──────────────────────────────────────────────────
+    // Compaction
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Move the current journal aside and start a new one. Every record in the
+     * rotated file describes a mutation that is already in memory, so once the
+     * dirty shards are written it can be dropped with {@link #discardRotated()}.
+     * Blocks until all previously queued records are written.
+     */
+    public void rotate() {
+        try {
+            executor.submit(() -> {
+                channel.close();
+                try {
+                    if (rotated.exists()) {
+                        // A previous compaction did not finish: keep its records
+                        appendFile(file, rotated);
+                        file.delete();
+                    } else if (!file.renameTo(rotated)) {
+                        throw new IOException("Impossible de renommer " + file.getName());
+                    }
+                } finally {
+                    open();
+                }
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            plugin.getLogger().severe("Rotation du journal impossible : " + e.getCause().getMessage());
+        }
+    }
+
+    public void discardRotated() {
+        if (rotated.exists() && !rotated.delete()) {
+            plugin.getLogger().warning("Impossible de supprimer " + rotated.getName());
+        }
+    }
+
+    /**
+     * Wait for pending records, then close the journal. Called after the final
+     * save, so the journal content is no longer needed.
+     */
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void appendFile(File source, File target) throws IOException {
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            long position = 0, size = in.size();
+            while (position < size) position += in.transferTo(position, size - position, out);
+        }
+    }
+
+    // ──────────────────────────────────────────────────
+    // Recovery
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Apply journal.log.old then journal.log on top of the stored data, write
+     * the affected players back and delete both journals.
+     * Must run before the journal is opened.
+     */
+    public void replay(StorageManager storage) {
+        // uuid -> type -> page -> latest bytes
+        Map<UUID, Map<BackpackType, Map<Integer, byte[]>>> latest = new HashMap<>();
+        int records = readRecords(rotated, latest) + readRecords(file, latest);
+        if (records == 0) {
+            file.delete();
+            rotated.delete();
+            return;
+        }
+
+        int players = 0, failed = 0;
+        for (Map.Entry<UUID, Map<BackpackType, Map<Integer, byte[]>>> entry : latest.entrySet()) {
+            try {
+                Map<BackpackType, List<StoredPage>> playerData = storage.readStored(entry.getKey());
+
+                for (Map.Entry<BackpackType, Map<Integer, byte[]>> typeEntry : entry.getValue().entrySet()) {
+                    BackpackType type = typeEntry.getKey();
+                    List<StoredPage> pages = playerData.computeIfAbsent(type, k -> new ArrayList<>());
+                    for (Map.Entry<Integer, byte[]> pageEntry : typeEntry.getValue().entrySet()) {
+                        int page = pageEntry.getKey();
+                        while (pages.size() <= page) pages.add(null);
+                        byte[] bytes = pageEntry.getValue();
+                        pages.set(page, BackpackCodec.isEmptyPage(bytes) ? null : StoredPage.restored(type, bytes));
+                    }
+                    BackpackCodec.trimEmpty(pages);
+                    if (pages.isEmpty()) playerData.remove(type);
+                }
+
+                storage.writeStored(entry.getKey(), playerData);
+                players++;
+            } catch (IOException e) {
+                plugin.getLogger().severe("Rejeu du journal impossible pour " + entry.getKey() + " : " + e.getMessage());
+                failed++;
+            }
+        }
+
+        if (failed > 0) {
+            // Keep the records around for a manual recovery
+            long now = System.currentTimeMillis();
+            file.renameTo(new File(file.getParentFile(), file.getName() + ".failed-" + now));
+            rotated.renameTo(new File(rotated.getParentFile(), rotated.getName() + ".failed-" + now));
+        }
+        file.delete();
+        rotated.delete();
+        plugin.getLogger().info("Journal rejoué : " + records + " entrée(s), " + players + " joueur(s).");
+    }
+
+    private int readRecords(File source, Map<UUID, Map<BackpackType, Map<Integer, byte[]>>> latest) {
+        if (!source.exists()) return 0;
+
+        int count = 0;
+        long remaining = source.length();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(source)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                int expectedCrc = in.readInt();
+                remaining -= 8;
+                // A corrupt header must not make us allocate a bogus size
+                if (length < 0 || length > remaining) {
+                    plugin.getLogger().warning("Entrée corrompue dans " + source.getName() + ", fin du rejeu de ce fichier.");
+                    break;
+                }
+                remaining -= length;
+                byte[] raw = new byte[length];
+                in.readFully(raw);
+
+                CRC32 crc = new CRC32();
+                crc.update(raw);
+                if ((int) crc.getValue() != expectedCrc) {
+                    plugin.getLogger().warning("Entrée corrompue dans " + source.getName() + ", fin du rejeu de ce fichier.");
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(raw));
+                UUID uuid = new UUID(record.readLong(), record.readLong());
+                String typeName = record.readUTF();
+                int page = record.readUnsignedShort();
+                int pageLength = record.readInt();
+                if (pageLength < 0 || pageLength > record.available()) {
+                    plugin.getLogger().warning("Entrée corrompue dans " + source.getName() + ", fin du rejeu de ce fichier.");
+                    break;
+                }
+                byte[] bytes = new byte[pageLength];
+                record.readFully(bytes);
+
+                BackpackType type;
+                try { type = BackpackType.valueOf(typeName); } catch (IllegalArgumentException e) { continue; }
+
+                latest.computeIfAbsent(uuid, k -> new EnumMap<>(BackpackType.class))
+                        .computeIfAbsent(type, k -> new HashMap<>())
+                        .put(page, bytes);
+                count++;
+            }
+        } catch (EOFException e) {
+            plugin.getLogger().warning("Dernière entrée de " + source.getName() + " incomplète, ignorée.");
+        } catch (IOException e) {
+            plugin.getLogger().severe("Lecture de " + source.getName() + " impossible : " + e.getMessage());
+        }
+        return count;
+    }
+}
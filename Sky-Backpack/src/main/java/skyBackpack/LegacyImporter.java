@@ -0,0 +1,176 @@
+package skyBackpack;
+
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One-shot conversion of older storage into the configured engine.
+ *
+ * Handles the original single backpacks.yml (players.&lt;uuid&gt;.&lt;TYPE&gt;.page_N.slot_N),
+ * YAML shards (players/&lt;uuid&gt;.yml) and, when another engine is active,
+ * binary shards (players/&lt;uuid&gt;.dat). Converted files are renamed with a
+ * .migrated suffix so the import only runs once. Players are converted in
+ * parallel on the startup pool ({@link StorageManager#runParallel}).
+ */
+public class LegacyImporter {
+
+    private final SkyBackpack plugin;
+    private final StorageManager storage;
+    private final File folder;
+
+    public LegacyImporter(SkyBackpack plugin, StorageManager storage, File folder) {
+        this.plugin = plugin;
+        this.storage = storage;
+        this.folder = folder;
+    }
+
+    public void run() {
+        importLegacyFile();
+        importYamlShards();
+        if (!(storage.getBackend() instanceof ShardFileBackend)) importBinaryShards();
+    }
+
+    private void importLegacyFile() {
+        File legacy = new File(plugin.getDataFolder(), "backpacks.yml");
+        if (!legacy.exists()) return;
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(legacy);
+        ConfigurationSection players = config.getConfigurationSection("players");
+        List<String> keys = players == null ? Collections.emptyList() : new ArrayList<>(players.getKeys(false));
+        Set<String> failed = ConcurrentHashMap.newKeySet();
+
+        int migrated = storage.runParallel("Import de backpacks.yml", keys, uuidStr -> {
+            UUID uuid;
+            try { uuid = UUID.fromString(uuidStr); } catch (Exception e) { return false; }
+
+            ConfigurationSection playerSection = players.getConfigurationSection(uuidStr);
+            if (playerSection == null) return false;
+
+            Map<BackpackType, List<StoredPage>> playerData = readSection(playerSection);
+            if (playerData.isEmpty()) return false;
+
+            try {
+                storage.writeStored(uuid, playerData);
+                return true;
+            } catch (IOException e) {
+                e.printStackTrace();
+                failed.add(uuidStr);
+                return false;
+            }
+        });
+
+        if (!failed.isEmpty()) {
+            // Keep only the failed players for the retry: importing the others
+            // again would overwrite what changed in their shards since
+            for (String key : keys) {
+                if (!failed.contains(key)) players.set(key, null);
+            }
+            try {
+                config.save(legacy);
+            } catch (IOException e) {
+                // Renamed anyway: a full second import is worse than a manual one for a few players
+                plugin.getLogger().severe("Réécriture de backpacks.yml impossible (" + e.getMessage() + ") ; fichier renommé en "
+                        + legacy.getName() + ".migrated, joueurs à réimporter à la main : " + failed);
+                markMigrated(legacy);
+                return;
+            }
+            plugin.getLogger().warning("Import de backpacks.yml : " + migrated + " joueur(s) convertis, "
+                    + failed.size() + " en échec, réessayés au prochain démarrage.");
+            return;
+        }
+        markMigrated(legacy);
+        plugin.getLogger().info("Import de backpacks.yml : " + migrated + " joueur(s) convertis.");
+    }
+
+    private void importYamlShards() {
+        File[] shards = folder.listFiles((dir, name) -> name.endsWith(".yml"));
+        if (shards == null || shards.length == 0) return;
+
+        storage.runParallel("Import des fichiers YAML par joueur", Arrays.asList(shards), shard -> {
+            UUID uuid;
+            try { uuid = UUID.fromString(shard.getName().substring(0, shard.getName().length() - 4)); } catch (Exception e) { return false; }
+
+            Map<BackpackType, List<StoredPage>> playerData = readSection(YamlConfiguration.loadConfiguration(shard));
+            try {
+                storage.writeStored(uuid, playerData);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            markMigrated(shard);
+            return true;
+        });
+    }
+
+    private void importBinaryShards() {
+        File[] shards = folder.listFiles((dir, name) -> name.endsWith(".dat"));
+        if (shards == null || shards.length == 0) return;
+
+        storage.runParallel("Import des fichiers .dat par joueur", Arrays.asList(shards), shard -> {
+            UUID uuid;
+            try { uuid = UUID.fromString(shard.getName().substring(0, shard.getName().length() - 4)); } catch (Exception e) { return false; }
+
+            try {
+                Map<BackpackType, List<StoredPage>> playerData = BackpackCodec.read(shard);
+                // Pages read from a shard count as persisted; the target engine must still write them
+                for (Map.Entry<BackpackType, List<StoredPage>> entry : playerData.entrySet()) {
+                    BackpackType type = entry.getKey();
+                    entry.getValue().replaceAll(page -> page == null ? null : StoredPage.restored(type, page.encode()));
+                }
+                storage.writeStored(uuid, playerData);
+            } catch (IOException e) {
+                e.printStackTrace();
+                return false;
+            }
+            markMigrated(shard);
+            return true;
+        });
+    }
+
+    private void markMigrated(File file) {
+        File done = new File(file.getParentFile(), file.getName() + ".migrated");
+        if (!file.renameTo(done)) {
+            plugin.getLogger().warning("Impossible de renommer " + file.getName() + " après l'import.");
+        }
+    }
+
+    /**
+     * Read the &lt;TYPE&gt;.page_N.slot_N layout under the given section.
+     */
+    static Map<BackpackType, List<StoredPage>> readSection(ConfigurationSection section) {
+        Map<BackpackType, List<StoredPage>> playerData = new HashMap<>();
+
+        for (BackpackType type : BackpackType.values()) {
+            ConfigurationSection typeSection = section.getConfigurationSection(type.name());
+            if (typeSection == null) continue;
+
+            List<StoredPage> pages = new ArrayList<>();
+            int pageIndex = 0;
+            while (true) {
+                ConfigurationSection pageSection = typeSection.getConfigurationSection("page_" + pageIndex);
+                if (pageSection == null) break;
+
+                int size = type.getUsableSlots();
+                ItemStack[] items = new ItemStack[size];
+                for (int slot = 0; slot < size; slot++) {
+                    Object obj = pageSection.get("slot_" + slot);
+                    if (obj instanceof ItemStack) {
+                        items[slot] = (ItemStack) obj;
+                    }
+                }
+                pages.add(BackpackCodec.isEmpty(items) ? null : StoredPage.of(type, items));
+                pageIndex++;
+            }
+            BackpackCodec.trimEmpty(pages);
+
+            if (!pages.isEmpty()) playerData.put(type, pages);
+        }
+        return playerData;
+    }
+}
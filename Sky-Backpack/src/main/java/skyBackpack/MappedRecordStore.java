@@ -0,0 +1,336 @@
+package skyBackpack;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * Storage engine that keeps every page in a memory-mapped data file of
+ * fixed-size records, plus a UUID → record index.
+ *
+ * backpacks.data: records of RECORD_SIZE bytes, mapped by segments
+ *   int    next record + 1 (0 = end of chain)
+ *   int    bytes used in this record
+ *   byte[] payload (a slice of the encoded page)
+ *
+ * backpacks.idx: append-only log of index entries, rewritten on open
+ *   long   uuid most significant bits
+ *   long   uuid least significant bits
+ *   UTF    type name
+ *   short  page
+ *   int    first record (-1 = page deleted)
+ *
+ * A page is a chain of records (usually one). Reading or writing a page is a
+ * positioned access into the mapping; only pages not yet persisted are
+ * rewritten. A new chain is written before the index points to it, and the
+ * old chain is released afterwards. The free list is rebuilt on open from
+ * the records no index entry can reach.
+ */
+public class MappedRecordStore implements StorageBackend {
+
+    private static final int RECORD_SIZE = 4096;
+    private static final int HEADER_SIZE = 8;
+    private static final int PAYLOAD_SIZE = RECORD_SIZE - HEADER_SIZE;
+    private static final int SEGMENT_RECORDS = 4096; // 16 MiB per mapping
+    private static final long SEGMENT_SIZE = (long) RECORD_SIZE * SEGMENT_RECORDS;
+
+    private final File dataFile;
+    private final File indexFile;
+
+    private FileChannel dataChannel;
+    private final List<MappedByteBuffer> segments = new ArrayList<>();
+    private final ArrayDeque<Integer> freeList = new ArrayDeque<>();
+    private final Map<UUID, Map<BackpackType, List<Integer>>> index = new HashMap<>();
+    private DataOutputStream indexLog;
+
+    public MappedRecordStore(File folder) {
+        this.dataFile = new File(folder, "backpacks.data");
+        this.indexFile = new File(folder, "backpacks.idx");
+    }
+
+    // ──────────────────────────────────────────────────
+    // Lifecycle
+    // ──────────────────────────────────────────────────
+
+    @Override
+    public synchronized void open() throws IOException {
+        dataChannel = FileChannel.open(dataFile.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long segmentCount = (dataChannel.size() + SEGMENT_SIZE - 1) / SEGMENT_SIZE;
+        for (int s = 0; s < segmentCount; s++) mapSegment(s);
+
+        readIndex();
+        rebuildFreeList();
+        rewriteIndex();
+        indexLog = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(indexFile, true)));
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for (MappedByteBuffer segment : segments) segment.force();
+        if (indexLog != null) indexLog.close();
+        if (dataChannel != null) dataChannel.close();
+        segments.clear();
+    }
+
+    private void mapSegment(int segment) throws IOException {
+        segments.add(dataChannel.map(FileChannel.MapMode.READ_WRITE, segment * SEGMENT_SIZE, SEGMENT_SIZE));
+    }
+
+    // ──────────────────────────────────────────────────
+    // Public API
+    // ──────────────────────────────────────────────────
+
+    @Override
+    public synchronized Map<BackpackType, List<StoredPage>> read(UUID uuid) throws IOException {
+        Map<BackpackType, List<StoredPage>> playerData = new HashMap<>();
+        Map<BackpackType, List<Integer>> entries = index.get(uuid);
+        if (entries == null) return playerData;
+
+        for (Map.Entry<BackpackType, List<Integer>> entry : entries.entrySet()) {
+            BackpackType type = entry.getKey();
+            List<StoredPage> pages = new ArrayList<>();
+            for (int first : entry.getValue()) {
+                pages.add(first < 0 ? null : StoredPage.loaded(type, readChain(first)));
+            }
+            if (!pages.isEmpty()) playerData.put(type, pages);
+        }
+        return playerData;
+    }
+
+    /**
+     * Persist a player's pages. Pages already on disk are skipped; pages that
+     * disappeared from the map are released.
+     */
+    @Override
+    public synchronized void write(UUID uuid, Map<BackpackType, List<StoredPage>> playerData) throws IOException {
+        Map<BackpackType, List<Integer>> entries = index.computeIfAbsent(uuid, k -> new EnumMap<>(BackpackType.class));
+        Set<Integer> touchedSegments = new HashSet<>();
+        List<Integer> released = new ArrayList<>();
+
+        for (Map.Entry<BackpackType, List<StoredPage>> entry : playerData.entrySet()) {
+            BackpackType type = entry.getKey();
+            List<StoredPage> pages = entry.getValue();
+            List<Integer> firsts = entries.computeIfAbsent(type, k -> new ArrayList<>());
+
+            for (int p = 0; p < pages.size(); p++) {
+                StoredPage page = pages.get(p);
+                boolean known = p < firsts.size() && firsts.get(p) >= 0;
+                if (page == null) {
+                    // Empty page: release whatever was stored there
+                    if (known) clearPage(uuid, type, firsts, p, released);
+                    continue;
+                }
+                if (known && page.isPersisted()) continue;
+
+                byte[] bytes = page.encode();
+                int first = writeChain(bytes, touchedSegments);
+                while (firsts.size() <= p) firsts.add(-1);
+                int previous = firsts.set(p, first);
+                logEntry(uuid, type, p, first);
+                if (previous >= 0) released.add(previous);
+                page.markPersisted(bytes);
+            }
+            // Pages beyond the current list were removed
+            for (int p = firsts.size() - 1; p >= pages.size(); p--) {
+                deletePage(uuid, type, firsts, p, released);
+            }
+        }
+        // Types that are no longer present
+        for (Iterator<Map.Entry<BackpackType, List<Integer>>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<BackpackType, List<Integer>> entry = it.next();
+            if (playerData.containsKey(entry.getKey())) continue;
+            List<Integer> firsts = entry.getValue();
+            for (int p = firsts.size() - 1; p >= 0; p--) deletePage(uuid, entry.getKey(), firsts, p, released);
+            it.remove();
+        }
+        if (entries.isEmpty()) index.remove(uuid);
+
+        // Data first, then the index entries pointing to it, and only then
+        // hand the old chains back: the on-disk index may still reference them
+        for (int segment : touchedSegments) segments.get(segment).force();
+        indexLog.flush();
+        for (int first : released) releaseChain(first);
+    }
+
+    @Override
+    public synchronized Set<UUID> players() {
+        return new HashSet<>(index.keySet());
+    }
+
+    private void clearPage(UUID uuid, BackpackType type, List<Integer> firsts, int page,
+                           List<Integer> released) throws IOException {
+        int first = firsts.set(page, -1);
+        logEntry(uuid, type, page, -1);
+        released.add(first);
+    }
+
+    private void deletePage(UUID uuid, BackpackType type, List<Integer> firsts, int page,
+                            List<Integer> released) throws IOException {
+        int first = firsts.remove(page);
+        if (first < 0) return;
+        logEntry(uuid, type, page, -1);
+        released.add(first);
+    }
+
+    // ──────────────────────────────────────────────────
+    // Records
+    // ──────────────────────────────────────────────────
+
+    private MappedByteBuffer segmentOf(int record) {
+        return segments.get(record / SEGMENT_RECORDS);
+    }
+
+    private int offsetOf(int record) {
+        return (record % SEGMENT_RECORDS) * RECORD_SIZE;
+    }
+
+    private int allocate() throws IOException {
+        if (freeList.isEmpty()) {
+            int segment = segments.size();
+            mapSegment(segment);
+            for (int r = 0; r < SEGMENT_RECORDS; r++) freeList.add(segment * SEGMENT_RECORDS + r);
+        }
+        return freeList.poll();
+    }
+
+    private int writeChain(byte[] bytes, Set<Integer> touchedSegments) throws IOException {
+        int count = Math.max(1, (bytes.length + PAYLOAD_SIZE - 1) / PAYLOAD_SIZE);
+        int[] records = new int[count];
+        for (int i = 0; i < count; i++) records[i] = allocate();
+
+        for (int i = 0; i < count; i++) {
+            int from = i * PAYLOAD_SIZE;
+            int length = Math.min(PAYLOAD_SIZE, bytes.length - from);
+            MappedByteBuffer buffer = segmentOf(records[i]);
+            int offset = offsetOf(records[i]);
+            buffer.putInt(offset, i + 1 < count ? records[i + 1] + 1 : 0);
+            buffer.putInt(offset + 4, length);
+            buffer.put(offset + HEADER_SIZE, bytes, from, length);
+            touchedSegments.add(records[i] / SEGMENT_RECORDS);
+        }
+        return records[0];
+    }
+
+    private byte[] readChain(int first) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(PAYLOAD_SIZE);
+        int record = first;
+        int hops = 0;
+        while (record >= 0) {
+            if (record / SEGMENT_RECORDS >= segments.size() || ++hops > segments.size() * SEGMENT_RECORDS) {
+                throw new IOException("Chaîne d'enregistrements rompue à " + first);
+            }
+            MappedByteBuffer buffer = segmentOf(record);
+            int offset = offsetOf(record);
+            int next = buffer.getInt(offset) - 1;
+            int length = buffer.getInt(offset + 4);
+            if (length < 0 || length > PAYLOAD_SIZE) throw new IOException("Enregistrement corrompu : " + record);
+            byte[] chunk = new byte[length];
+            buffer.get(offset + HEADER_SIZE, chunk);
+            out.write(chunk);
+            record = next;
+        }
+        return out.toByteArray();
+    }
+
+    private void releaseChain(int first) {
+        int record = first;
+        while (record >= 0 && record / SEGMENT_RECORDS < segments.size()) {
+            int next = segmentOf(record).getInt(offsetOf(record)) - 1;
+            freeList.add(record);
+            record = next;
+        }
+    }
+
+    private void rebuildFreeList() {
+        int total = segments.size() * SEGMENT_RECORDS;
+        BitSet used = new BitSet(total);
+        for (Map<BackpackType, List<Integer>> entries : index.values()) {
+            for (List<Integer> firsts : entries.values()) {
+                for (int record : firsts) {
+                    while (record >= 0 && record < total && !used.get(record)) {
+                        used.set(record);
+                        record = segmentOf(record).getInt(offsetOf(record)) - 1;
+                    }
+                }
+            }
+        }
+        freeList.clear();
+        for (int r = used.nextClearBit(0); r < total; r = used.nextClearBit(r + 1)) freeList.add(r);
+    }
+
+    // ──────────────────────────────────────────────────
+    // Index
+    // ──────────────────────────────────────────────────
+
+    private void readIndex() throws IOException {
+        index.clear();
+        if (!indexFile.exists()) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)))) {
+            while (true) {
+                long msb;
+                try {
+                    msb = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                UUID uuid = new UUID(msb, in.readLong());
+                String typeName = in.readUTF();
+                int page = in.readUnsignedShort();
+                int first = in.readInt();
+
+                BackpackType type;
+                try { type = BackpackType.valueOf(typeName); } catch (IllegalArgumentException e) { continue; }
+
+                List<Integer> firsts = index.computeIfAbsent(uuid, k -> new EnumMap<>(BackpackType.class))
+                        .computeIfAbsent(type, k -> new ArrayList<>());
+                while (firsts.size() <= page) firsts.add(-1);
+                firsts.set(page, first);
+            }
+        } catch (EOFException e) {
+            // Torn last entry: its chain is simply treated as free
+        }
+
+        // Drop trailing deleted pages and empty players
+        for (Iterator<Map<BackpackType, List<Integer>>> it = index.values().iterator(); it.hasNext(); ) {
+            Map<BackpackType, List<Integer>> entries = it.next();
+            entries.values().removeIf(firsts -> {
+                while (!firsts.isEmpty() && firsts.get(firsts.size() - 1) < 0) firsts.remove(firsts.size() - 1);
+                return firsts.isEmpty();
+            });
+            if (entries.isEmpty()) it.remove();
+        }
+    }
+
+    private void rewriteIndex() throws IOException {
+        File tmp = new File(indexFile.getParentFile(), indexFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            for (Map.Entry<UUID, Map<BackpackType, List<Integer>>> entry : index.entrySet()) {
+                for (Map.Entry<BackpackType, List<Integer>> typeEntry : entry.getValue().entrySet()) {
+                    List<Integer> firsts = typeEntry.getValue();
+                    for (int p = 0; p < firsts.size(); p++) {
+                        writeEntry(out, entry.getKey(), typeEntry.getKey(), p, firsts.get(p));
+                    }
+                }
+            }
+        }
+        Files.move(tmp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private void logEntry(UUID uuid, BackpackType type, int page, int first) throws IOException {
+        writeEntry(indexLog, uuid, type, page, first);
+    }
+
+    private static void writeEntry(DataOutputStream out, UUID uuid, BackpackType type, int page, int first) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeUTF(type.name());
+        out.writeShort(page);
+        out.writeInt(first);
+    }
+}
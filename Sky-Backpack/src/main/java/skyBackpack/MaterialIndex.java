@@ -0,0 +1,301 @@
+package skyBackpack;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Which players hold which materials in their backpacks, and how many.
+ *
+ * Entries are keyed by material and custom model data (0 = none). The index
+ * is kept up to date with deltas: {@link StorageManager} passes the before and
+ * after of every page it changes, and only the slots that differ are counted.
+ * Players stay indexed after they leave, so a lookup covers every backpack
+ * without touching the stored pages.
+ *
+ * The index is persisted in index.dat, so it is never rebuilt by decoding
+ * the stored items except the first time (or after the file is deleted).
+ * Each flush appends the totals of the players that changed; the file is
+ * rewritten compacted at shutdown or once the appended records grow past
+ * {@link #COMPACT_BYTES}.
+ *
+ * index.dat:
+ *   int    magic 'SKBI'
+ *   short  version
+ *   record* (the last record of a player wins):
+ *     long   uuid most significant bits
+ *     long   uuid least significant bits
+ *     short  entryCount (0 = the player holds nothing)
+ *       UTF    material name
+ *       int    custom model data
+ *       long   amount
+ *
+ * Updates for one player are atomic; lookups only read the holders of the
+ * requested entry.
+ */
+public class MaterialIndex {
+
+    public static final int MAGIC = 0x534B4249; // "SKBI"
+    public static final short VERSION = 1;
+
+    // Appended bytes that trigger a compacted rewrite
+    private static final long COMPACT_BYTES = 16L * 1024 * 1024;
+
+    /** Material and custom model data of an indexed item. */
+    public static final class Key {
+        private final Material material;
+        private final int customModelData;
+
+        Key(Material material, int customModelData) {
+            this.material = material;
+            this.customModelData = customModelData;
+        }
+
+        public Material getMaterial() { return material; }
+        public int getCustomModelData() { return customModelData; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) return false;
+            Key other = (Key) o;
+            return material == other.material && customModelData == other.customModelData;
+        }
+
+        @Override
+        public int hashCode() {
+            return material.hashCode() * 31 + customModelData;
+        }
+    }
+
+    private final boolean enabled;
+
+    // material -> custom model data -> player -> amount
+    private final Map<Material, Map<Integer, Map<UUID, Long>>> holders = new ConcurrentHashMap<>();
+
+    // player -> amount per key, to recount or persist a player without scanning the holders
+    private final Map<UUID, Map<Key, Long>> totals = new ConcurrentHashMap<>();
+
+    // Players whose totals changed since they were last written to index.dat
+    private final Set<UUID> changed = ConcurrentHashMap.newKeySet();
+    private long appended; // writer thread only
+
+    public MaterialIndex(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() { return enabled; }
+
+    // ──────────────────────────────────────────────────
+    // Counting
+    // ──────────────────────────────────────────────────
+
+    static Key keyOf(ItemStack item) {
+        int cmd = 0;
+        if (item.hasItemMeta()) {
+            ItemMeta meta = item.getItemMeta();
+            if (meta.hasCustomModelData()) cmd = meta.getCustomModelData();
+        }
+        return new Key(item.getType(), cmd);
+    }
+
+    private static void add(Map<Key, Long> counts, ItemStack item, int sign) {
+        if (item == null || item.getType().isAir()) return;
+        counts.merge(keyOf(item), (long) sign * item.getAmount(), Long::sum);
+    }
+
+    /**
+     * Add the items of a page to the given counts.
+     */
+    static void count(Map<Key, Long> counts, ItemStack[] items) {
+        if (items == null) return;
+        for (ItemStack item : items) add(counts, item, 1);
+    }
+
+    // ──────────────────────────────────────────────────
+    // Updates
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Account for one page going from {@code before} to {@code after}
+     * (either may be null for an empty page). Slots holding the same stack
+     * on both sides are skipped, so an unchanged page costs no allocation.
+     */
+    public void update(UUID uuid, ItemStack[] before, ItemStack[] after) {
+        if (!enabled) return;
+        int length = Math.max(before == null ? 0 : before.length, after == null ? 0 : after.length);
+        Map<Key, Long> delta = null;
+        for (int s = 0; s < length; s++) {
+            ItemStack old = before != null && s < before.length ? before[s] : null;
+            ItemStack now = after != null && s < after.length ? after[s] : null;
+            if (old == now || old != null && old.equals(now)) continue;
+            if (delta == null) delta = new HashMap<>();
+            add(delta, old, -1);
+            add(delta, now, 1);
+        }
+        if (delta != null) apply(uuid, delta, false);
+    }
+
+    /**
+     * Replace everything indexed for a player with the given counts.
+     */
+    public void replace(UUID uuid, Map<Key, Long> counts) {
+        if (!enabled) return;
+        apply(uuid, counts, true);
+    }
+
+    private void apply(UUID uuid, Map<Key, Long> counts, boolean absolute) {
+        totals.compute(uuid, (k, current) -> merge(uuid, current == null ? new ConcurrentHashMap<>() : current, counts, absolute));
+        changed.add(uuid);
+    }
+
+    /**
+     * Runs inside totals.compute, so updates for one player never interleave.
+     * @return the player's new totals, or null once they hold nothing
+     */
+    private Map<Key, Long> merge(UUID uuid, Map<Key, Long> current, Map<Key, Long> counts, boolean absolute) {
+        Map<Key, Long> delta = counts;
+        if (absolute) {
+            delta = new HashMap<>(counts);
+            for (Map.Entry<Key, Long> entry : current.entrySet()) delta.merge(entry.getKey(), -entry.getValue(), Long::sum);
+        }
+
+        for (Map.Entry<Key, Long> entry : delta.entrySet()) {
+            long change = entry.getValue();
+            if (change == 0) continue;
+            Key key = entry.getKey();
+            Long updated = current.merge(key, change, Long::sum);
+            if (updated <= 0) current.remove(key);
+
+            Map<Integer, Map<UUID, Long>> variants = holders.computeIfAbsent(key.material, m -> new ConcurrentHashMap<>());
+            Map<UUID, Long> players = variants.computeIfAbsent(key.customModelData, c -> new ConcurrentHashMap<>());
+            if (updated <= 0) players.remove(uuid);
+            else players.put(uuid, updated);
+            if (players.isEmpty()) {
+                variants.remove(key.customModelData, players);
+                if (variants.isEmpty()) holders.remove(key.material, variants);
+            }
+        }
+        return current.isEmpty() ? null : current;
+    }
+
+    public void clear() {
+        holders.clear();
+        totals.clear();
+        changed.clear();
+    }
+
+    // ──────────────────────────────────────────────────
+    // Queries
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Players holding the material, with their amount.
+     * @param customModelData only count this variant, or null for all of them
+     */
+    public Map<UUID, Long> find(Material material, Integer customModelData) {
+        Map<UUID, Long> result = new HashMap<>();
+        Map<Integer, Map<UUID, Long>> variants = holders.get(material);
+        if (variants == null) return result;
+        if (customModelData != null) {
+            Map<UUID, Long> players = variants.get(customModelData);
+            if (players != null) result.putAll(players);
+            return result;
+        }
+        for (Map<UUID, Long> players : variants.values()) {
+            for (Map.Entry<UUID, Long> entry : players.entrySet()) result.merge(entry.getKey(), entry.getValue(), Long::sum);
+        }
+        return result;
+    }
+
+    public int size() { return totals.size(); }
+
+    // ──────────────────────────────────────────────────
+    // Persistence (startup, then the writer thread only)
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Read index.dat into memory. A torn last record is ignored.
+     * @return false if there is no usable file and the index must be rebuilt
+     */
+    public boolean load(File file) throws IOException {
+        if (!file.exists()) return false;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readShort() != VERSION) return false;
+            while (true) {
+                long most;
+                try {
+                    most = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+                UUID uuid = new UUID(most, in.readLong());
+                int count = in.readUnsignedShort();
+                Map<Key, Long> counts = new HashMap<>();
+                for (int i = 0; i < count; i++) {
+                    Material material = Material.getMaterial(in.readUTF());
+                    int cmd = in.readInt();
+                    long amount = in.readLong();
+                    if (material != null) counts.merge(new Key(material, cmd), amount, Long::sum);
+                }
+                replace(uuid, counts);
+            }
+        } catch (EOFException e) {
+            // Crash while appending: the players of that record are recounted from the journal
+        }
+        changed.clear();
+        return true;
+    }
+
+    /**
+     * Append the players that changed since the last write, or rewrite the
+     * whole file once enough records were appended.
+     */
+    public void appendChanged(File file) throws IOException {
+        if (!enabled || changed.isEmpty()) return;
+        if (appended >= COMPACT_BYTES || !file.exists()) {
+            save(file);
+            return;
+        }
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)))) {
+            for (UUID uuid : new ArrayList<>(changed)) {
+                changed.remove(uuid); // a change from now on marks the player again
+                writeRecord(out, uuid, totals.get(uuid));
+            }
+            appended += out.size();
+        }
+    }
+
+    /**
+     * Rewrite index.dat with one record per indexed player.
+     */
+    public void save(File file) throws IOException {
+        if (!enabled) return;
+        changed.clear();
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            for (Map.Entry<UUID, Map<Key, Long>> entry : totals.entrySet()) writeRecord(out, entry.getKey(), entry.getValue());
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        appended = 0;
+    }
+
+    private static void writeRecord(DataOutputStream out, UUID uuid, Map<Key, Long> counts) throws IOException {
+        List<Map.Entry<Key, Long>> entries = counts == null ? Collections.emptyList() : new ArrayList<>(counts.entrySet());
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+        out.writeShort(entries.size());
+        for (Map.Entry<Key, Long> entry : entries) {
+            out.writeUTF(entry.getKey().material.name());
+            out.writeInt(entry.getKey().customModelData);
+            out.writeLong(entry.getValue());
+        }
+    }
+}
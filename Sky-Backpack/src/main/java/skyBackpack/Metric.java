@@ -0,0 +1,28 @@
+package skyBackpack;
+
+/**
+ * Instrumented hot paths. Main-thread probes are the ones that add to tick time.
+ */
+public enum Metric {
+
+    OPEN_BACKPACK("open_backpack", true),
+    SWITCH_PAGE("switch_page", true),
+    SAVE_PAGE("save_page", true),
+    INVENTORY_CLICK("inventory_click", true),
+    INVENTORY_DRAG("inventory_drag", true),
+    ECONOMY_HAS("economy_has", false),
+    ECONOMY_WITHDRAW("economy_withdraw", false),
+    STORAGE_LOAD("storage_load", false),
+    STORAGE_SAVE("storage_save", false);
+
+    private final String key;
+    private final boolean mainThread;
+
+    Metric(String key, boolean mainThread) {
+        this.key = key;
+        this.mainThread = mainThread;
+    }
+
+    public String getKey() { return key; }
+    public boolean isMainThread() { return mainThread; }
+}
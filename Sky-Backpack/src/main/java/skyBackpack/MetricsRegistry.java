@@ -0,0 +1,137 @@
+package skyBackpack;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histograms for the plugin's hot paths.
+ *
+ * Recording only touches preallocated adders and atomics, so it never
+ * allocates. Histograms use power-of-two microsecond buckets; percentiles are
+ * reported as the upper bound of their bucket. The report is available through
+ * /backpack stats and written to metrics.txt every metrics.write-interval-seconds.
+ */
+public class MetricsRegistry {
+
+    private static final int BUCKETS = 24; // up to ~8 s
+
+    private final SkyBackpack plugin;
+    private final Probe[] probes = new Probe[Metric.values().length];
+    private volatile long since = System.nanoTime();
+    private volatile TaskScheduler.Task writerTask;
+
+    public MetricsRegistry(SkyBackpack plugin) {
+        this.plugin = plugin;
+        for (Metric metric : Metric.values()) probes[metric.ordinal()] = new Probe();
+    }
+
+    // ──────────────────────────────────────────────────
+    // Recording
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Record one call that started at {@code startNanos} (System.nanoTime()).
+     */
+    public void record(Metric metric, long startNanos) {
+        probes[metric.ordinal()].record(System.nanoTime() - startNanos);
+    }
+
+    public void reset() {
+        for (Probe probe : probes) probe.reset();
+        since = System.nanoTime();
+    }
+
+    // ──────────────────────────────────────────────────
+    // Reporting
+    // ──────────────────────────────────────────────────
+
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+        double elapsedMs = (System.nanoTime() - since) / 1_000_000.0;
+        double ticks = Math.max(1.0, elapsedMs / 50.0);
+        long mainThreadNanos = 0;
+
+        for (Metric metric : Metric.values()) {
+            Probe probe = probes[metric.ordinal()];
+            long count = probe.count.sum();
+            long total = probe.totalNanos.sum();
+            if (metric.isMainThread()) mainThreadNanos += total;
+            if (count == 0) {
+                lines.add(String.format("%-17s count=0", metric.getKey()));
+                continue;
+            }
+            lines.add(String.format("%-17s count=%d avg=%.3fms p50<=%.3fms p99<=%.3fms max=%.3fms",
+                    metric.getKey(), count, total / (double) count / 1_000_000.0,
+                    probe.percentile(0.50), probe.percentile(0.99), probe.maxNanos.get() / 1_000_000.0));
+        }
+        lines.add(String.format("main thread: %.4f ms/tick over %.0f s", mainThreadNanos / 1_000_000.0 / ticks, elapsedMs / 1000.0));
+        return lines;
+    }
+
+    public void startWriter() {
+        if (!plugin.getConfig().getBoolean("metrics.write-file", true)) return;
+        long interval = Math.max(1, plugin.getConfig().getLong("metrics.write-interval-seconds", 60));
+        File file = new File(plugin.getDataFolder(), "metrics.txt");
+        writerTask = plugin.getTaskScheduler().runAsyncTimer(() -> {
+            try {
+                Files.write(file.toPath(), report(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Écriture de metrics.txt impossible : " + e.getMessage());
+            }
+        }, interval);
+    }
+
+    public void stopWriter() {
+        if (writerTask != null) {
+            writerTask.cancel();
+            writerTask = null;
+        }
+    }
+
+    // ──────────────────────────────────────────────────
+    // Probe
+    // ──────────────────────────────────────────────────
+
+    private static final class Probe {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) max = maxNanos.get();
+            int bucket = 64 - Long.numberOfLeadingZeros(nanos / 1000);
+            buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        }
+
+        /** Upper bound (ms) of the bucket holding the given quantile. */
+        double percentile(double quantile) {
+            long total = 0;
+            for (int i = 0; i < BUCKETS; i++) total += buckets.get(i);
+            long target = (long) Math.ceil(total * quantile);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += buckets.get(i);
+                if (seen >= target) return (1L << i) / 1000.0;
+            }
+            return (1L << (BUCKETS - 1)) / 1000.0;
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            for (int i = 0; i < BUCKETS; i++) buckets.set(i, 0);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package skyBackpack;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Byte budget for the pages kept uncompressed in memory (memory.page-budget-mb).
+ *
+ * Pages are tracked in access order as they are loaded, viewed or saved.
+ * When their total footprint goes over the budget, the least recently used
+ * persisted pages are moved to the cold tier ({@link StoredPage#compress()}).
+ * Pages the storage engine does not have yet are skipped until they have
+ * been written. Demotion runs on the writer thread after each flush, so the
+ * budget is a soft cap between two flushes.
+ */
+public class PageBudget {
+
+    private final long budget; // bytes, 0 = unlimited
+    private final LinkedHashMap<StoredPage, Integer> pages = new LinkedHashMap<>(256, 0.75f, true);
+    private long bytes;
+    private long demoted;
+
+    public PageBudget(long budget) {
+        this.budget = budget;
+    }
+
+    public boolean isEnabled() { return budget > 0; }
+
+    /** Record an access to a page (it becomes the most recently used). */
+    public void touch(StoredPage page) {
+        if (budget <= 0 || page == null) return;
+        int size = page.footprint();
+        synchronized (this) {
+            Integer previous = pages.put(page, size);
+            bytes += size - (previous == null ? 0 : previous);
+        }
+    }
+
+    public void touchAll(Map<BackpackType, List<StoredPage>> playerData) {
+        if (budget <= 0) return;
+        for (List<StoredPage> list : playerData.values()) {
+            for (StoredPage page : list) touch(page);
+        }
+    }
+
+    /** Stop tracking a page that left memory. */
+    public void forget(StoredPage page) {
+        if (budget <= 0 || page == null) return;
+        synchronized (this) {
+            Integer previous = pages.remove(page);
+            if (previous != null) bytes -= previous;
+        }
+    }
+
+    public void forgetAll(Map<BackpackType, List<StoredPage>> playerData) {
+        if (budget <= 0) return;
+        for (List<StoredPage> list : playerData.values()) {
+            for (StoredPage page : list) forget(page);
+        }
+    }
+
+    /**
+     * Compress least recently used pages until the tracked total fits the budget.
+     * Victims are picked under the lock but compressed after it is released,
+     * so {@link #touch} on the server threads never waits for the Deflater.
+     */
+    public void demote() {
+        if (budget <= 0) return;
+        List<StoredPage> victims = new ArrayList<>();
+        synchronized (this) {
+            for (Iterator<Map.Entry<StoredPage, Integer>> it = pages.entrySet().iterator(); bytes > budget && it.hasNext(); ) {
+                Map.Entry<StoredPage, Integer> entry = it.next();
+                if (!entry.getKey().isPersisted()) continue; // retried after the next flush
+                bytes -= entry.getValue();
+                victims.add(entry.getKey());
+                it.remove();
+            }
+        }
+        // A page changed meanwhile refuses to compress; setPage tracks it again
+        int compressed = 0;
+        for (StoredPage page : victims) {
+            if (page.compress()) compressed++;
+        }
+        synchronized (this) {
+            demoted += compressed;
+        }
+    }
+
+    public synchronized String report() {
+        if (budget <= 0) return "pages en mémoire : budget désactivé";
+        return String.format("pages en mémoire : %d (%d Ko / %d Ko), %d compressées depuis le démarrage",
+                pages.size(), bytes / 1024, budget / 1024, demoted);
+    }
+}
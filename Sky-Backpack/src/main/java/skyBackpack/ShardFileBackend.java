@@ -0,0 +1,71 @@
+package skyBackpack;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * One binary shard per player: players/&lt;uuid&gt;.dat (see {@link BackpackCodec}).
+ */
+public class ShardFileBackend implements StorageBackend {
+
+    private final SkyBackpack plugin;
+    private final File folder;
+
+    public ShardFileBackend(SkyBackpack plugin, File folder) {
+        this.plugin = plugin;
+        this.folder = folder;
+    }
+
+    @Override
+    public void open() {
+        if (!folder.exists()) folder.mkdirs();
+    }
+
+    @Override
+    public void close() {}
+
+    @Override
+    public Map<BackpackType, List<StoredPage>> read(UUID uuid) throws IOException {
+        File file = shardFile(uuid);
+        if (!file.exists()) return new HashMap<>();
+        try {
+            return BackpackCodec.read(file);
+        } catch (IOException e) {
+            // Keep the unreadable file aside instead of overwriting it on the next save
+            File corrupt = new File(folder, uuid + ".dat.corrupt");
+            plugin.getLogger().severe("Shard illisible pour " + uuid + ", déplacé vers " + corrupt.getName());
+            file.renameTo(corrupt);
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(UUID uuid, Map<BackpackType, List<StoredPage>> playerData) throws IOException {
+        BackpackCodec.write(shardFile(uuid), playerData);
+    }
+
+    /** Each player has their own file. */
+    @Override
+    public boolean supportsParallelWrites() {
+        return true;
+    }
+
+    @Override
+    public Set<UUID> players() {
+        Set<UUID> players = new HashSet<>();
+        File[] shards = folder.listFiles((dir, name) -> name.endsWith(".dat"));
+        if (shards == null) return players;
+        for (File shard : shards) {
+            try {
+                players.add(UUID.fromString(shard.getName().substring(0, shard.getName().length() - 4)));
+            } catch (IllegalArgumentException ignored) {
+            }
+        }
+        return players;
+    }
+
+    private File shardFile(UUID uuid) {
+        return new File(folder, uuid + ".dat");
+    }
+}
@@ -8,13 +8,29 @@ public class SkyBackpack extends JavaPlugin {
     private StorageManager storageManager;
     private EconomyManager economyManager;
     private GUIManager guiManager;
+    private MetricsRegistry metrics;
+    private AuditLog auditLog;
+    private TaskScheduler scheduler;
 
     @Override
     public void onEnable() {
         instance = this;
+        saveDefaultConfig();
+        scheduler = new TaskScheduler(this);
+
+        metrics = new MetricsRegistry(this);
+        metrics.startWriter();
+
+        auditLog = new AuditLog(this);
+        auditLog.start();
 
         storageManager = new StorageManager(this);
-        storageManager.load();
+        if (!storageManager.load()) {
+            storageManager = null;
+            getServer().getPluginManager().disablePlugin(this);
+            return;
+        }
+        storageManager.startWriter();
 
         economyManager = new EconomyManager(this);
         if (!economyManager.setup()) {
@@ -26,13 +42,19 @@ public class SkyBackpack extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new BackpackListener(this), this);
 
         getCommand("upgrade").setExecutor(new UpgradeCommand(this));
+        BackpackCommand backpackCommand = new BackpackCommand(this);
+        getCommand("backpack").setExecutor(backpackCommand);
+        getCommand("backpack").setTabCompleter(backpackCommand);
 
         getLogger().info("SkyBackpack activé.");
     }
 
     @Override
     public void onDisable() {
-        if (storageManager != null) storageManager.save();
+        if (metrics != null) metrics.stopWriter();
+        if (guiManager != null) guiManager.saveAllSessions();
+        if (auditLog != null) auditLog.stop();
+        if (storageManager != null) storageManager.shutdown();
         getLogger().info("SkyBackpack désactivé.");
     }
 
@@ -40,4 +62,7 @@ public class SkyBackpack extends JavaPlugin {
     public StorageManager getStorageManager() { return storageManager; }
     public EconomyManager getEconomyManager() { return economyManager; }
     public GUIManager getGUIManager() { return guiManager; }
+    public MetricsRegistry getMetrics() { return metrics; }
+    public AuditLog getAuditLog() { return auditLog; }
+    public TaskScheduler getTaskScheduler() { return scheduler; }
 }
@@ -0,0 +1,198 @@
+package skyBackpack;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Embedded SQLite database (backpacks.db), one row per (uuid, type, page).
+ *
+ * The connection is confined to a dedicated I/O thread: every call is
+ * submitted to it and awaited. Batches of players are written in a single
+ * transaction, and only pages not yet persisted are upserted. Uses the
+ * SQLite driver shipped with the server; nothing runs outside the process.
+ */
+public class SqliteBackend implements StorageBackend {
+
+    private static final String SCHEMA =
+            "CREATE TABLE IF NOT EXISTS backpack_pages ("
+                    + " uuid TEXT NOT NULL,"
+                    + " type TEXT NOT NULL,"
+                    + " page INTEGER NOT NULL,"
+                    + " data BLOB NOT NULL,"
+                    + " PRIMARY KEY (uuid, type, page)"
+                    + ") WITHOUT ROWID";
+
+    private final File file;
+    private final ExecutorService io = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "SkyBackpack-SQLite");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Connection connection;
+
+    public SqliteBackend(File folder) {
+        this.file = new File(folder, "backpacks.db");
+    }
+
+    @Override
+    public void open() throws IOException {
+        call(() -> {
+            try {
+                Class.forName("org.sqlite.JDBC");
+            } catch (ClassNotFoundException e) {
+                throw new SQLException("Driver SQLite introuvable", e);
+            }
+            connection = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+            try (Statement st = connection.createStatement()) {
+                st.execute("PRAGMA journal_mode=WAL");
+                st.execute("PRAGMA synchronous=NORMAL");
+                st.execute(SCHEMA);
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            call(() -> {
+                if (connection != null) connection.close();
+                return null;
+            });
+        } finally {
+            io.shutdown();
+        }
+    }
+
+    @Override
+    public Map<BackpackType, List<StoredPage>> read(UUID uuid) throws IOException {
+        return call(() -> {
+            Map<BackpackType, List<StoredPage>> playerData = new HashMap<>();
+            try (PreparedStatement st = connection.prepareStatement(
+                    "SELECT type, page, data FROM backpack_pages WHERE uuid = ? ORDER BY type, page")) {
+                st.setString(1, uuid.toString());
+                try (ResultSet rs = st.executeQuery()) {
+                    while (rs.next()) {
+                        BackpackType type;
+                        try { type = BackpackType.valueOf(rs.getString(1)); } catch (IllegalArgumentException e) { continue; }
+                        int page = rs.getInt(2);
+                        byte[] bytes = rs.getBytes(3);
+
+                        List<StoredPage> pages = playerData.computeIfAbsent(type, k -> new ArrayList<>());
+                        while (pages.size() < page) pages.add(null);
+                        pages.add(BackpackCodec.isEmptyPage(bytes) ? null : StoredPage.loaded(type, bytes));
+                    }
+                }
+            }
+            for (List<StoredPage> pages : playerData.values()) BackpackCodec.trimEmpty(pages);
+            playerData.values().removeIf(List::isEmpty);
+            return playerData;
+        });
+    }
+
+    @Override
+    public void write(UUID uuid, Map<BackpackType, List<StoredPage>> playerData) throws IOException {
+        Set<UUID> failed = writeAll(Collections.singletonMap(uuid, playerData));
+        if (!failed.isEmpty()) throw new IOException("Écriture SQLite impossible pour " + uuid);
+    }
+
+    @Override
+    public Set<UUID> writeAll(Map<UUID, Map<BackpackType, List<StoredPage>>> batch) {
+        try {
+            call(() -> {
+                List<Runnable> onCommit = new ArrayList<>();
+                connection.setAutoCommit(false);
+                try (PreparedStatement upsert = connection.prepareStatement(
+                             "INSERT OR REPLACE INTO backpack_pages (uuid, type, page, data) VALUES (?, ?, ?, ?)");
+                     PreparedStatement deletePage = connection.prepareStatement(
+                             "DELETE FROM backpack_pages WHERE uuid = ? AND type = ? AND page = ?");
+                     PreparedStatement trimPages = connection.prepareStatement(
+                             "DELETE FROM backpack_pages WHERE uuid = ? AND type = ? AND page >= ?")) {
+
+                    for (Map.Entry<UUID, Map<BackpackType, List<StoredPage>>> entry : batch.entrySet()) {
+                        String uuid = entry.getKey().toString();
+                        for (BackpackType type : BackpackType.values()) {
+                            List<StoredPage> pages = entry.getValue().get(type);
+                            int size = pages == null ? 0 : pages.size();
+
+                            for (int p = 0; p < size; p++) {
+                                StoredPage page = pages.get(p);
+                                if (page == null) {
+                                    deletePage.setString(1, uuid);
+                                    deletePage.setString(2, type.name());
+                                    deletePage.setInt(3, p);
+                                    deletePage.addBatch();
+                                    continue;
+                                }
+                                if (page.isPersisted()) continue;
+                                byte[] bytes = page.encode();
+                                upsert.setString(1, uuid);
+                                upsert.setString(2, type.name());
+                                upsert.setInt(3, p);
+                                upsert.setBytes(4, bytes);
+                                upsert.addBatch();
+                                onCommit.add(() -> page.markPersisted(bytes));
+                            }
+
+                            trimPages.setString(1, uuid);
+                            trimPages.setString(2, type.name());
+                            trimPages.setInt(3, size);
+                            trimPages.addBatch();
+                        }
+                    }
+                    upsert.executeBatch();
+                    deletePage.executeBatch();
+                    trimPages.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                onCommit.forEach(Runnable::run);
+                return null;
+            });
+            return Collections.emptySet();
+        } catch (IOException e) {
+            e.printStackTrace();
+            return new HashSet<>(batch.keySet());
+        }
+    }
+
+    @Override
+    public Set<UUID> players() throws IOException {
+        return call(() -> {
+            Set<UUID> players = new HashSet<>();
+            try (Statement st = connection.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT DISTINCT uuid FROM backpack_pages")) {
+                while (rs.next()) {
+                    try { players.add(UUID.fromString(rs.getString(1))); } catch (IllegalArgumentException ignored) { }
+                }
+            }
+            return players;
+        });
+    }
+
+    // ──────────────────────────────────────────────────
+    // I/O thread
+    // ──────────────────────────────────────────────────
+
+    private interface SqlTask<T> {
+        T run() throws SQLException;
+    }
+
+    private <T> T call(SqlTask<T> task) throws IOException {
+        try {
+            return io.submit(task::run).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrompu", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause().getMessage(), e.getCause());
+        }
+    }
+}
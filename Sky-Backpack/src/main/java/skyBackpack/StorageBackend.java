@@ -0,0 +1,61 @@
+package skyBackpack;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Persistence engine behind {@link StorageManager}.
+ *
+ * StorageManager keeps loaded players in memory, tracks what changed and
+ * decides when to write; a backend only reads and writes one player's pages.
+ * Implementations must be safe to call from the writer thread and from
+ * pre-login threads at the same time.
+ */
+public interface StorageBackend {
+
+    void open() throws IOException;
+
+    void close() throws IOException;
+
+    /**
+     * Read every page of a player. Returns an empty map for unknown players.
+     * Empty pages are null entries; lists never end with one.
+     */
+    Map<BackpackType, List<StoredPage>> read(UUID uuid) throws IOException;
+
+    /**
+     * Persist a player's pages. Types and pages missing from the map, and null
+     * pages, are deleted.
+     */
+    void write(UUID uuid, Map<BackpackType, List<StoredPage>> playerData) throws IOException;
+
+    /**
+     * Persist several players. Backends with transactions write them as one batch.
+     * @return the players that could not be written
+     */
+    default Set<UUID> writeAll(Map<UUID, Map<BackpackType, List<StoredPage>>> batch) {
+        Set<UUID> failed = new HashSet<>();
+        for (Map.Entry<UUID, Map<BackpackType, List<StoredPage>>> entry : batch.entrySet()) {
+            try {
+                write(entry.getKey(), entry.getValue());
+            } catch (IOException e) {
+                e.printStackTrace();
+                failed.add(entry.getKey());
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * True if {@link #write} may be called for different players at the same
+     * time. Used by the shutdown flush.
+     */
+    default boolean supportsParallelWrites() {
+        return false;
+    }
+
+    /**
+     * Every player that has stored data.
+     */
+    Set<UUID> players() throws IOException;
+}
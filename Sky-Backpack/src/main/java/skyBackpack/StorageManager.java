@@ -1,167 +1,819 @@
 package skyBackpack;
 
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
 
 /**
- * Stores backpack contents in backpacks.yml
+ * In-memory view of backpack contents on top of a {@link StorageBackend},
+ * selected by storage.engine:
+ *   file   – one binary file per player ({@link ShardFileBackend})
+ *   mapped – a single memory-mapped record file ({@link MappedRecordStore})
+ *   sqlite – an embedded SQLite database ({@link SqliteBackend})
  *
- * Structure:
- * players:
- *   <uuid>:
- *     BACKPACK_1:
- *       page_0:
- *         slot_0: <serialized ItemStack>
- *         ...
- *     BACKPACK_2:
- *       page_0: ...
+ * Only online (or just disconnected) players are kept in memory. Shards are
+ * prefetched during pre-login and evicted once the player quits.
+ * YAML storage (backpacks.yml or players/*.yml) is converted on first load
+ * by {@link LegacyImporter}.
+ *
+ * Writes are deferred: mutations only mark the player dirty, and a background
+ * writer flushes dirty shards every autosave.interval-seconds, or as soon as
+ * autosave.max-pending players are waiting.
+ *
+ * Every mutation is also appended to a {@link Journal}, so a crash between two
+ * writes loses nothing: the journal is replayed on startup and folded into the
+ * shards by each flush.
+ *
+ * All state is safe to use from several threads at once (Folia regions, the
+ * pre-login thread and the writer); each player's map is its own lock.
+ *
+ * Every page change is also reported to the {@link MaterialIndex}, under the
+ * player's lock, so staff can look up who holds an item (/backpack find).
+ * The index is saved in index.dat by the writer; players rewritten behind its
+ * back at startup (legacy import, journal replay) are recounted once loaded.
  */
 public class StorageManager {
 
+    // Players per writeAll during shutdown on single-writer engines
+    private static final int SHUTDOWN_CHUNK = 500;
+
+    // Players loaded by compact() between two evicting flushes
+    private static final int COMPACT_CHUNK = 200;
+
     private final SkyBackpack plugin;
-    private File file;
-    private YamlConfiguration config;
+    private File folder;
 
-    // Map<playerUUID, Map<BackpackType, List<ItemStack[]>>> (one array per page)
-    private final Map<UUID, Map<BackpackType, List<ItemStack[]>>> data = new HashMap<>();
+    // Map<playerUUID, Map<BackpackType, List<StoredPage>>> (null = empty page)
+    private final Map<UUID, Map<BackpackType, List<StoredPage>>> data = new ConcurrentHashMap<>();
+
+    // Write-behind state
+    private final Set<UUID> dirty = ConcurrentHashMap.newKeySet();
+    private final Set<UUID> pendingEviction = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final Object writeLock = new Object();
+    private PageBudget budget = new PageBudget(0);
+    private MaterialIndex index = new MaterialIndex(false);
+    private File indexFile;
+    private volatile boolean indexReady;
+    private final Set<UUID> staleIndex = ConcurrentHashMap.newKeySet();
+    private volatile TaskScheduler.Task writerTask;
+    private volatile int maxPending;
+    private Journal journal;
+    private StorageBackend backend;
 
     public StorageManager(SkyBackpack plugin) {
         this.plugin = plugin;
     }
 
-    public void load() {
-        file = new File(plugin.getDataFolder(), "backpacks.yml");
-        if (!file.exists()) {
-            plugin.getDataFolder().mkdirs();
-            try { file.createNewFile(); } catch (IOException e) { e.printStackTrace(); }
+    /**
+     * Open the configured engine and bring it up to date (legacy import,
+     * journal replay, players already online).
+     * @return false if the engine could not be opened; the plugin must not run then
+     */
+    public boolean load() {
+        budget = new PageBudget(Math.max(0, plugin.getConfig().getLong("memory.page-budget-mb", 256)) * 1024 * 1024);
+        folder = new File(plugin.getDataFolder(), "players");
+        if (!folder.exists()) folder.mkdirs();
+
+        String engine = plugin.getConfig().getString("storage.engine", "file").toLowerCase(Locale.ROOT);
+        switch (engine) {
+            case "mapped": backend = new MappedRecordStore(plugin.getDataFolder()); break;
+            case "sqlite": backend = new SqliteBackend(plugin.getDataFolder()); break;
+            default: backend = new ShardFileBackend(plugin, folder); break;
+        }
+        try {
+            backend.open();
+        } catch (IOException e) {
+            // No fallback engine: players would see empty backpacks, and the
+            // fallback's files would later be imported over the real data
+            plugin.getLogger().severe("Ouverture du stockage '" + engine + "' impossible, SkyBackpack est désactivé : " + e.getMessage());
+            return false;
         }
-        config = YamlConfiguration.loadConfiguration(file);
 
-        ConfigurationSection players = config.getConfigurationSection("players");
-        if (players == null) return;
+        new LegacyImporter(plugin, this, folder).run();
+
+        // Replayed whatever journal.enabled says now: a journal left by an earlier
+        // run is newer than the shards, and replaying it later would roll them back
+        Journal recovered = new Journal(plugin, plugin.getConfig().getBoolean("journal.fsync", false));
+        recovered.replay(this);
 
-        for (String uuidStr : players.getKeys(false)) {
-            UUID uuid;
-            try { uuid = UUID.fromString(uuidStr); } catch (Exception e) { continue; }
+        if (plugin.getConfig().getBoolean("journal.enabled", true)) {
+            journal = recovered;
+            try {
+                journal.open();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Ouverture du journal impossible, journalisation désactivée : " + e.getMessage());
+                journal = null;
+            }
+        }
+
+        loadIndex();
 
-            Map<BackpackType, List<ItemStack[]>> playerData = new HashMap<>();
+        // Players already online (e.g. after a reload) never went through pre-login.
+        // Everyone else is loaded lazily when they join.
+        List<UUID> online = new ArrayList<>();
+        for (Player player : plugin.getServer().getOnlinePlayers()) online.add(player.getUniqueId());
+        runParallel("Chargement des joueurs connectés", online, uuid -> {
+            try {
+                preload(uuid);
+                return true;
+            } catch (IOException e) {
+                plugin.getLogger().severe("Données illisibles pour " + uuid + " : " + e.getMessage());
+                return false;
+            }
+        });
+        return true;
+    }
 
-            for (BackpackType type : BackpackType.values()) {
-                ConfigurationSection typeSection = players.getConfigurationSection(uuidStr + "." + type.name());
-                if (typeSection == null) continue;
+    /**
+     * Run a startup task for every item on a worker pool (startup.threads),
+     * logging progress every few seconds and the total time at the end.
+     * Blocks until every item is processed.
+     * @return the number of items for which the task returned true
+     */
+    <T> int runParallel(String label, Collection<T> items, Predicate<T> task) {
+        if (items.isEmpty()) return 0;
+        int threads = plugin.getConfig().getInt("startup.threads", 0);
+        if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
 
-                List<ItemStack[]> pages = new ArrayList<>();
-                int pageIndex = 0;
-                while (true) {
-                    ConfigurationSection pageSection = typeSection.getConfigurationSection("page_" + pageIndex);
-                    if (pageSection == null) break;
+        long start = System.nanoTime();
+        AtomicInteger done = new AtomicInteger();
+        AtomicInteger succeeded = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            ForkJoinTask<?> job = pool.submit(() -> items.parallelStream().forEach(item -> {
+                if (task.test(item)) succeeded.incrementAndGet();
+                done.incrementAndGet();
+            }));
+            while (true) {
+                try {
+                    job.get(5, TimeUnit.SECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    plugin.getLogger().info(label + " : " + done.get() + "/" + items.size() + "...");
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (ExecutionException e) {
+                    plugin.getLogger().severe(label + " interrompu : " + e.getCause());
+                    break;
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
 
-                    int size = type.getUsableSlots();
-                    ItemStack[] items = new ItemStack[size];
-                    for (int slot = 0; slot < size; slot++) {
-                        Object obj = pageSection.get("slot_" + slot);
-                        if (obj instanceof ItemStack) {
-                            items[slot] = (ItemStack) obj;
-                        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        plugin.getLogger().info(label + " : " + succeeded.get() + "/" + items.size() + " en " + elapsed
+                + " ms (" + threads + " thread(s)).");
+        return succeeded.get();
+    }
+
+    /**
+     * Synchronously write every loaded player. Blocks the calling thread.
+     */
+    public void save() {
+        dirty.addAll(data.keySet());
+        flush();
+    }
+
+    /**
+     * Write a single player's data to the backend right away.
+     * @return false if the write failed
+     */
+    public boolean savePlayer(UUID uuid) {
+        Map<BackpackType, List<StoredPage>> playerData = data.get(uuid);
+        if (playerData == null) return true;
+
+        try {
+            writeStored(uuid, snapshot(playerData));
+            return true;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    // ──────────────────────────────────────────────────
+    // Write-behind
+    // ──────────────────────────────────────────────────
+
+    public void startWriter() {
+        long interval = Math.max(1, plugin.getConfig().getLong("autosave.interval-seconds", 30));
+        maxPending = Math.max(1, plugin.getConfig().getInt("autosave.max-pending", 50));
+        writerTask = plugin.getTaskScheduler().runAsyncTimer(this::flush, interval);
+    }
+
+    /**
+     * Stop the background writer and write every loaded player with pending
+     * changes. Players left dirty at the deadline stay in the dirty set and
+     * are reported.
+     *
+     * Pages are encoded on a fork-join pool (shutdown.threads), and shards
+     * are written on it too when the backend allows parallel writes. The
+     * whole flush is bounded by shutdown.timeout-seconds. Whatever is not
+     * written by then stays in the rotated journal and is replayed on the
+     * next start.
+     *
+     * Engines with a single writer (mapped, sqlite) are given the players in
+     * chunks of {@link #SHUTDOWN_CHUNK} and no chunk starts after the deadline:
+     * closing the engine waits for the chunk in flight, so the deadline is
+     * overrun by one chunk at most.
+     */
+    public void shutdown() {
+        if (writerTask != null) {
+            writerTask.cancel();
+            writerTask = null;
+        }
+
+        long timeout = Math.max(1, plugin.getConfig().getLong("shutdown.timeout-seconds", 20));
+        int threads = plugin.getConfig().getInt("shutdown.threads", 0);
+        if (threads <= 0) threads = Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.SECONDS.toNanos(timeout);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Set<UUID> written = ConcurrentHashMap.newKeySet();
+        Set<UUID> failed = ConcurrentHashMap.newKeySet();
+        int total;
+        try {
+            synchronized (writeLock) {
+                if (journal != null) journal.rotate();
+
+                // Clean players already match their shard: the deadline is spent on dirty ones only
+                Map<UUID, Map<BackpackType, List<StoredPage>>> batch = new HashMap<>();
+                for (UUID uuid : dirty) {
+                    Map<BackpackType, List<StoredPage>> playerData = data.get(uuid);
+                    if (playerData != null) batch.put(uuid, snapshot(playerData));
+                }
+                total = batch.size();
+
+                // Serialize every page in parallel; writes then only copy bytes
+                runUntil(pool.submit(() -> batch.values().parallelStream().forEach(playerData -> {
+                    for (List<StoredPage> pages : playerData.values()) {
+                        for (StoredPage page : pages) if (page != null) page.encode();
                     }
-                    pages.add(items);
-                    pageIndex++;
+                })), deadline);
+
+                if (backend.supportsParallelWrites()) {
+                    runUntil(pool.submit(() -> batch.entrySet().parallelStream().forEach(entry -> {
+                        if (System.nanoTime() > deadline) return;
+                        try {
+                            backend.write(entry.getKey(), entry.getValue());
+                            written.add(entry.getKey());
+                        } catch (IOException e) {
+                            e.printStackTrace();
+                            failed.add(entry.getKey());
+                        }
+                    })), deadline);
+                } else {
+                    List<UUID> order = new ArrayList<>(batch.keySet());
+                    runUntil(pool.submit(() -> {
+                        for (int from = 0; from < order.size() && System.nanoTime() < deadline; from += SHUTDOWN_CHUNK) {
+                            Map<UUID, Map<BackpackType, List<StoredPage>>> chunk = new HashMap<>();
+                            for (UUID uuid : order.subList(from, Math.min(order.size(), from + SHUTDOWN_CHUNK))) {
+                                chunk.put(uuid, batch.get(uuid));
+                            }
+                            Set<UUID> rejected = backend.writeAll(chunk);
+                            failed.addAll(rejected);
+                            for (UUID uuid : chunk.keySet()) if (!rejected.contains(uuid)) written.add(uuid);
+                        }
+                    }), deadline);
                 }
 
-                if (!pages.isEmpty()) playerData.put(type, pages);
+                if (journal != null && written.size() == total) journal.discardRotated();
             }
+        } finally {
+            pool.shutdownNow();
+        }
+        dirty.removeAll(written);
 
-            if (!playerData.isEmpty()) data.put(uuid, playerData);
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        int pending = total - written.size() - failed.size();
+        plugin.getLogger().info("Sauvegarde d'arrêt : " + written.size() + "/" + total + " joueur(s) modifiés écrits en "
+                + elapsed + " ms avec " + threads + " thread(s).");
+        if (!failed.isEmpty() || pending > 0) {
+            plugin.getLogger().severe("Sauvegarde d'arrêt incomplète : " + failed.size() + " en échec, " + pending
+                    + " non terminés, " + dirty.size() + " joueur(s) non écrits."
+                    + (journal != null ? " Le journal sera rejoué au prochain démarrage."
+                                       : " Journal désactivé : leurs dernières modifications sont perdues."));
         }
+
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Écriture de index.dat impossible : " + e.getMessage());
+        }
+        if (journal != null) journal.close();
+        try { backend.close(); } catch (IOException e) { e.printStackTrace(); }
     }
 
-    public void save() {
-        config = new YamlConfiguration();
-
-        for (Map.Entry<UUID, Map<BackpackType, List<ItemStack[]>>> playerEntry : data.entrySet()) {
-            String uuidStr = playerEntry.getKey().toString();
-            for (Map.Entry<BackpackType, List<ItemStack[]>> typeEntry : playerEntry.getValue().entrySet()) {
-                String typeName = typeEntry.getKey().name();
-                List<ItemStack[]> pages = typeEntry.getValue();
-                for (int p = 0; p < pages.size(); p++) {
-                    ItemStack[] items = pages.get(p);
-                    for (int slot = 0; slot < items.length; slot++) {
-                        if (items[slot] != null && items[slot].getType().isAir()) continue;
-                        String path = "players." + uuidStr + "." + typeName + ".page_" + p + ".slot_" + slot;
-                        config.set(path, items[slot]);
-                    }
+    /**
+     * Wait for a shutdown step until the deadline. A step that times out keeps
+     * running until the pool is shut down; its players are reported as pending.
+     */
+    private void runUntil(ForkJoinTask<?> task, long deadline) {
+        try {
+            task.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            plugin.getLogger().severe("Sauvegarde d'arrêt : " + e.getCause());
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Sauvegarde d'arrêt : délai dépassé.");
+        }
+    }
+
+    /**
+     * Flag a player's shard as needing a write.
+     */
+    public void markDirty(UUID uuid) {
+        dirty.add(uuid);
+    }
+
+    /**
+     * Write every dirty shard, then evict players who left in the meantime.
+     * Runs on the writer thread; concurrent calls are serialised.
+     * This is also the journal compaction: records written before the
+     * rotation are covered by the shards written here.
+     */
+    public void flush() {
+        flushQueued.set(false);
+        long start = System.nanoTime();
+        synchronized (writeLock) {
+            if (journal != null) journal.rotate();
+
+            Map<UUID, Map<BackpackType, List<StoredPage>>> batch = new HashMap<>();
+            for (UUID uuid : new ArrayList<>(dirty)) {
+                dirty.remove(uuid);
+                Map<BackpackType, List<StoredPage>> playerData = data.get(uuid);
+                if (playerData != null) batch.put(uuid, snapshot(playerData));
+            }
+            Set<UUID> failed = batch.isEmpty() ? Collections.emptySet() : backend.writeAll(batch);
+            dirty.addAll(failed); // retried on the next flush
+            boolean complete = failed.isEmpty();
+
+            // Before the rotated journal goes: if this append is lost, the replay recounts its players
+            try {
+                index.appendChanged(indexFile);
+            } catch (IOException e) {
+                plugin.getLogger().warning("Écriture de index.dat impossible : " + e.getMessage());
+            }
+
+            // Keep the rotated journal until every shard it covers is on disk
+            if (journal != null && complete) journal.discardRotated();
+            for (UUID uuid : new ArrayList<>(pendingEviction)) {
+                Map<BackpackType, List<StoredPage>> playerData = data.get(uuid);
+                if (playerData == null) {
+                    pendingEviction.remove(uuid);
+                    continue;
+                }
+                // Mutations mark the player dirty under this lock (see markResident)
+                synchronized (playerData) {
+                    if (dirty.contains(uuid)) continue;
+                    if (pendingEviction.remove(uuid) && data.remove(uuid, playerData)) budget.forgetAll(playerData);
                 }
             }
+            budget.demote();
+        }
+        plugin.getMetrics().record(Metric.STORAGE_SAVE, start);
+    }
+
+    PageBudget getBudget() { return budget; }
+
+    MaterialIndex getIndex() { return index; }
+
+    private void requestFlush() {
+        if (!flushQueued.compareAndSet(false, true)) return;
+        if (!plugin.isEnabled()) {
+            flush();
+            return;
+        }
+        plugin.getTaskScheduler().runAsync(this::flush);
+    }
+
+    /**
+     * Copy the page lists so the writer never iterates structures the main
+     * thread is mutating. Pages replace their item array on change and stored
+     * ItemStacks are never modified in place, so sharing pages is safe.
+     */
+    private Map<BackpackType, List<StoredPage>> snapshot(Map<BackpackType, List<StoredPage>> playerData) {
+        Map<BackpackType, List<StoredPage>> copy = new HashMap<>();
+        synchronized (playerData) {
+            for (Map.Entry<BackpackType, List<StoredPage>> entry : playerData.entrySet()) {
+                copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+            }
+        }
+        return copy;
+    }
+
+    // ──────────────────────────────────────────────────
+    // Lazy loading / eviction
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Read a player's shard into memory. Safe to call off the main thread
+     * (AsyncPlayerPreLoginEvent); does nothing if the player is already loaded.
+     * @throws IOException if the shard could not be read; nothing is loaded then
+     */
+    public void preload(UUID uuid) throws IOException {
+        pendingEviction.remove(uuid);
+        if (data.containsKey(uuid)) return;
+        publish(uuid, readShard(uuid));
+    }
+
+    /**
+     * Make freshly read data resident unless another thread was faster.
+     * @return the resident data
+     */
+    private Map<BackpackType, List<StoredPage>> publish(UUID uuid, Map<BackpackType, List<StoredPage>> playerData) {
+        Map<BackpackType, List<StoredPage>> previous = data.putIfAbsent(uuid, playerData);
+        return previous != null ? previous : playerData;
+    }
+
+    /**
+     * Drop a player from memory once their pending changes are written,
+     * unless they came back in the meantime.
+     */
+    public void unload(UUID uuid) {
+        if (!data.containsKey(uuid)) return;
+        pendingEviction.add(uuid);
+        requestFlush();
+    }
+
+    /**
+     * Never substitute an empty map for unreadable data: once resident it
+     * would be written back over the player's real shard.
+     */
+    private Map<BackpackType, List<StoredPage>> readShard(UUID uuid) throws IOException {
+        long start = System.nanoTime();
+        try {
+            Map<BackpackType, List<StoredPage>> playerData = readStored(uuid);
+            budget.touchAll(playerData);
+            return playerData;
+        } finally {
+            plugin.getMetrics().record(Metric.STORAGE_LOAD, start);
         }
+    }
+
+    // ──────────────────────────────────────────────────
+    // Engine access (also used by the importer and journal replay)
+    // ──────────────────────────────────────────────────
+
+    StorageBackend getBackend() { return backend; }
+
+    Map<BackpackType, List<StoredPage>> readStored(UUID uuid) throws IOException {
+        return backend.read(uuid);
+    }
 
-        try { config.save(file); } catch (IOException e) { e.printStackTrace(); }
+    void writeStored(UUID uuid, Map<BackpackType, List<StoredPage>> playerData) throws IOException {
+        backend.write(uuid, playerData);
+        // Written without deltas (import, journal replay): recount once the index is loaded
+        if (!indexReady) staleIndex.add(uuid);
     }
 
     // ──────────────────────────────────────────────────
     // Public API
     // ──────────────────────────────────────────────────
 
-    private Map<BackpackType, List<ItemStack[]>> getPlayerData(UUID uuid) {
-        return data.computeIfAbsent(uuid, k -> new HashMap<>());
+    /**
+     * Called with the player map locked after a mutation. Marks the player
+     * dirty and puts the map back if the writer evicted it while this thread
+     * was waiting for the lock (it was clean then, so it is still complete).
+     */
+    private void markResident(UUID uuid, Map<BackpackType, List<StoredPage>> playerData) {
+        markDirty(uuid);
+        data.putIfAbsent(uuid, playerData);
+    }
+
+    private Map<BackpackType, List<StoredPage>> getPlayerData(UUID uuid) {
+        Map<BackpackType, List<StoredPage>> playerData = data.get(uuid);
+        if (playerData != null) return playerData;
+        // Normally prefetched at pre-login; fall back to a blocking read otherwise
+        try {
+            return publish(uuid, readShard(uuid));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Données illisibles pour " + uuid, e);
+        }
     }
 
     /**
      * Get the items for a specific page of a backpack.
-     * Creates empty storage if it doesn't exist.
+     * Missing pages are returned as a fresh empty array and not stored.
      */
     public ItemStack[] getPage(UUID uuid, BackpackType type, int page) {
-        List<ItemStack[]> pages = getPlayerData(uuid)
-                .computeIfAbsent(type, k -> new ArrayList<>());
-
-        // Fill missing pages
-        while (pages.size() <= page) {
-            pages.add(new ItemStack[type.getUsableSlots()]);
+        Map<BackpackType, List<StoredPage>> playerData = getPlayerData(uuid);
+        synchronized (playerData) {
+            List<StoredPage> pages = playerData.get(type);
+            StoredPage stored = pages != null && page < pages.size() ? pages.get(page) : null;
+            if (stored == null) return new ItemStack[type.getUsableSlots()];
+            budget.touch(stored);
+            return stored.getItems();
         }
-        return pages.get(page);
     }
 
     /**
-     * Save the items for a specific page.
+     * Save the items for a specific page. Only this page is re-encoded on the next write;
+     * an empty page is removed instead.
      */
     public void setPage(UUID uuid, BackpackType type, int page, ItemStack[] items) {
-        List<ItemStack[]> pages = getPlayerData(uuid)
-                .computeIfAbsent(type, k -> new ArrayList<>());
-        while (pages.size() <= page) {
-            pages.add(new ItemStack[type.getUsableSlots()]);
+        Map<BackpackType, List<StoredPage>> playerData = getPlayerData(uuid);
+        StoredPage stored;
+        synchronized (playerData) {
+            List<StoredPage> pages = playerData.get(type);
+            if (BackpackCodec.isEmpty(items)) {
+                if (pages == null || page >= pages.size() || pages.get(page) == null) return;
+                index.update(uuid, peek(pages.get(page)), null);
+                budget.forget(pages.set(page, null));
+                BackpackCodec.trimEmpty(pages);
+                if (pages.isEmpty()) playerData.remove(type);
+                stored = StoredPage.of(type, items); // journaled as an empty page
+            } else {
+                if (pages == null) playerData.put(type, pages = new ArrayList<>());
+                while (pages.size() <= page) pages.add(null);
+                stored = pages.get(page);
+                index.update(uuid, peek(stored), items);
+                if (stored == null) pages.set(page, stored = StoredPage.of(type, items));
+                else stored.setItems(items);
+                budget.touch(stored);
+            }
+            markResident(uuid, playerData);
+        }
+        if (journal != null) journal.append(uuid, type, page, stored);
+    }
+
+    /**
+     * Drop the decoded items of a page that is no longer viewed; only its
+     * encoded bytes stay in memory.
+     */
+    public void releasePage(UUID uuid, BackpackType type, int page) {
+        Map<BackpackType, List<StoredPage>> playerData = data.get(uuid);
+        if (playerData == null) return;
+        synchronized (playerData) {
+            List<StoredPage> pages = playerData.get(type);
+            if (pages != null && page < pages.size() && pages.get(page) != null) pages.get(page).release();
         }
-        pages.set(page, items);
     }
 
     /**
      * Copy all data from one BackpackType to another for a player.
-     * Used during upgrade. Existing data in target is preserved / overwritten slot by slot.
+     * Existing data in target is preserved / overwritten slot by slot.
      */
     public void copyData(UUID uuid, BackpackType from, BackpackType to) {
-        List<ItemStack[]> fromPages = getPlayerData(uuid).get(from);
-        if (fromPages == null) return;
+        transfer(uuid, from, to, false);
+    }
+
+    /**
+     * Move all data from one BackpackType to another for a player: same as
+     * {@link #copyData} but the source tier is removed in the same step.
+     * Used during upgrade.
+     */
+    public void moveData(UUID uuid, BackpackType from, BackpackType to) {
+        transfer(uuid, from, to, true);
+    }
 
-        List<ItemStack[]> toPages = getPlayerData(uuid)
-                .computeIfAbsent(to, k -> new ArrayList<>());
+    private void transfer(UUID uuid, BackpackType from, BackpackType to, boolean move) {
+        Map<BackpackType, List<StoredPage>> playerData = getPlayerData(uuid);
+        Map<Integer, StoredPage> copied = new TreeMap<>();
+        int removed;
+        synchronized (playerData) {
+            List<StoredPage> fromPages = playerData.get(from);
+            if (fromPages == null) return;
 
-        for (int p = 0; p < fromPages.size(); p++) {
-            ItemStack[] src = fromPages.get(p);
-            int toSize = to.getUsableSlots();
-            while (toPages.size() <= p) toPages.add(new ItemStack[toSize]);
-            ItemStack[] dst = toPages.get(p);
-            // Copy slot by slot up to the min size
-            for (int s = 0; s < Math.min(src.length, dst.length); s++) {
-                dst[s] = src[s];
+            List<StoredPage> toPages = playerData.computeIfAbsent(to, k -> new ArrayList<>());
+
+            for (int p = 0; p < fromPages.size(); p++) {
+                if (fromPages.get(p) == null) continue;
+                ItemStack[] src = fromPages.get(p).getItems();
+                while (toPages.size() <= p) toPages.add(null);
+                StoredPage target = toPages.get(p);
+                // Work on a copy so the writer never sees a half-copied page
+                ItemStack[] before = target == null ? null : target.getItems();
+                ItemStack[] dst = before == null ? new ItemStack[to.getUsableSlots()] : before.clone();
+                // Copy slot by slot up to the min size
+                for (int s = 0; s < Math.min(src.length, dst.length); s++) {
+                    dst[s] = src[s];
+                }
+                index.update(uuid, before, dst);
+                if (target == null) toPages.set(p, target = StoredPage.of(to, dst));
+                else target.setItems(dst);
+                budget.touch(target);
+                copied.put(p, target);
+            }
+            BackpackCodec.trimEmpty(toPages);
+            if (toPages.isEmpty()) playerData.remove(to);
+
+            removed = move ? fromPages.size() : 0;
+            if (move) {
+                for (StoredPage moved : fromPages) {
+                    if (moved != null) index.update(uuid, moved.getItems(), null);
+                }
+                fromPages.forEach(budget::forget);
+                playerData.remove(from);
             }
-            toPages.set(p, dst);
+            markResident(uuid, playerData);
+        }
+        if (journal != null) {
+            for (Map.Entry<Integer, StoredPage> entry : copied.entrySet()) {
+                journal.append(uuid, to, entry.getKey(), entry.getValue());
+            }
+            for (int p = 0; p < removed; p++) journal.append(uuid, from, p, StoredPage.of(from, new ItemStack[0]));
         }
     }
 
+    // ──────────────────────────────────────────────────
+    // Compaction
+    // ──────────────────────────────────────────────────
+
+    /**
+     * Drop lower tiers left behind by upgrades made before they moved data.
+     * A tier is an orphan when a higher tier of the same player holds every
+     * one of its items at the same page and slot, which is exactly what the
+     * old copy-on-upgrade produced. Anything else is kept.
+     *
+     * Runs over every stored player. Offline players are checked on a copy
+     * read straight from the engine; only those with orphaned tiers are
+     * loaded, and they are evicted again every {@link #COMPACT_CHUNK} players.
+     * Pages are compared without being decoded into memory. Call off the
+     * main thread.
+     * @return the number of players that had orphaned tiers
+     */
+    public int compact() throws IOException {
+        Set<UUID> players = new HashSet<>(backend.players());
+        players.addAll(data.keySet());
+
+        int compacted = 0;
+        int loaded = 0;
+        for (UUID uuid : players) {
+            Map<BackpackType, List<StoredPage>> playerData = data.get(uuid);
+            boolean resident = playerData != null;
+            if (!resident) {
+                Map<BackpackType, List<StoredPage>> stored;
+                try {
+                    stored = readStored(uuid);
+                } catch (IOException e) {
+                    plugin.getLogger().warning("Compactage ignoré pour " + uuid + " : " + e.getMessage());
+                    continue;
+                }
+                if (!hasOrphan(stored)) continue;
+                playerData = publish(uuid, stored);
+                if (playerData == stored) budget.touchAll(stored);
+                loaded++;
+            }
+            Map<BackpackType, Integer> dropped = new EnumMap<>(BackpackType.class);
+            synchronized (playerData) {
+                for (BackpackType type : BackpackType.values()) {
+                    List<StoredPage> pages = playerData.get(type);
+                    if (pages == null || !isOrphan(playerData, type, pages)) continue;
+                    playerData.remove(type);
+                    for (StoredPage orphan : pages) index.update(uuid, peek(orphan), null);
+                    pages.forEach(budget::forget);
+                    dropped.put(type, pages.size());
+                }
+                if (!dropped.isEmpty()) markResident(uuid, playerData);
+            }
+            if (!dropped.isEmpty()) {
+                compacted++;
+                if (journal != null) {
+                    dropped.forEach((type, count) -> {
+                        for (int p = 0; p < count; p++) journal.append(uuid, type, p, StoredPage.of(type, new ItemStack[0]));
+                    });
+                }
+            }
+            if (!resident && plugin.getServer().getPlayer(uuid) == null) unload(uuid);
+            // Write and evict as we go so the run never holds the whole population
+            if (loaded >= COMPACT_CHUNK) {
+                flush();
+                loaded = 0;
+            }
+        }
+        requestFlush();
+        return compacted;
+    }
+
+    private static boolean hasOrphan(Map<BackpackType, List<StoredPage>> playerData) {
+        for (Map.Entry<BackpackType, List<StoredPage>> entry : playerData.entrySet()) {
+            if (isOrphan(playerData, entry.getKey(), entry.getValue())) return true;
+        }
+        return false;
+    }
+
+    private static boolean isOrphan(Map<BackpackType, List<StoredPage>> playerData, BackpackType type,
+                                    List<StoredPage> pages) {
+        for (BackpackType higher = type.getNext(); higher != null; higher = higher.getNext()) {
+            List<StoredPage> higherPages = playerData.get(higher);
+            if (higherPages != null && contains(higherPages, pages)) return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(List<StoredPage> outer, List<StoredPage> inner) {
+        for (int p = 0; p < inner.size(); p++) {
+            if (inner.get(p) == null) continue;
+            if (p >= outer.size() || outer.get(p) == null) return false;
+            // Unreadable pages never count as duplicates
+            ItemStack[] items = peek(inner.get(p));
+            ItemStack[] other = peek(outer.get(p));
+            if (items == null || other == null) return false;
+            for (int s = 0; s < items.length; s++) {
+                if (items[s] == null) continue;
+                if (s >= other.length || !items[s].equals(other[s])) return false;
+            }
+        }
+        return true;
+    }
+
+    // ──────────────────────────────────────────────────
+    // Material index
+    // ──────────────────────────────────────────────────
+
+    /** Contents of a page for the index, null for an empty or unreadable page. */
+    private static ItemStack[] peek(StoredPage page) {
+        if (page == null) return null;
+        try {
+            return page.peek();
+        } catch (UncheckedIOException e) {
+            return null;
+        }
+    }
+
+    private Map<MaterialIndex.Key, Long> tally(Map<BackpackType, List<StoredPage>> playerData) {
+        Map<MaterialIndex.Key, Long> counts = new HashMap<>();
+        for (List<StoredPage> pages : playerData.values()) {
+            for (StoredPage page : pages) MaterialIndex.count(counts, peek(page));
+        }
+        return counts;
+    }
+
+    /**
+     * Load index.dat, then recount the players the legacy import or the
+     * journal replay rewrote. Without a usable file (first start, or deleted
+     * to force it) every stored player is counted once, on the startup pool.
+     * Runs before any player can be loaded.
+     */
+    private void loadIndex() {
+        indexFile = new File(plugin.getDataFolder(), "index.dat");
+        index = new MaterialIndex(plugin.getConfig().getBoolean("index.enabled", true));
+        if (!index.isEnabled()) {
+            // Not maintained while disabled: rebuilt from scratch if turned back on
+            if (indexFile.exists() && !indexFile.delete()) plugin.getLogger().warning("Impossible de supprimer index.dat");
+            indexReady = true;
+            staleIndex.clear();
+            return;
+        }
+
+        Collection<UUID> recount = staleIndex;
+        String label = "Mise à jour de l'index des items";
+        try {
+            if (!index.load(indexFile)) {
+                index.clear();
+                recount = backend.players();
+                label = "Construction de l'index des items";
+            }
+        } catch (IOException e) {
+            plugin.getLogger().warning("index.dat illisible, reconstruction : " + e.getMessage());
+            index.clear();
+            try {
+                recount = backend.players();
+            } catch (IOException e2) {
+                plugin.getLogger().severe("Construction de l'index impossible : " + e2.getMessage());
+                recount = Collections.emptyList();
+            }
+            label = "Construction de l'index des items";
+        }
+
+        runParallel(label, new ArrayList<>(recount), uuid -> {
+            try {
+                index.replace(uuid, tally(readStored(uuid)));
+                return true;
+            } catch (IOException e) {
+                plugin.getLogger().warning("Indexation impossible pour " + uuid + " : " + e.getMessage());
+                return false;
+            }
+        });
+        indexReady = true;
+        staleIndex.clear();
+
+        try {
+            index.save(indexFile);
+        } catch (IOException e) {
+            plugin.getLogger().warning("Écriture de index.dat impossible : " + e.getMessage());
+        }
+    }
+
+    /**
+     * Hint that a save point was reached. Only costs an enqueue: the write
+     * itself is coalesced and performed by the background writer.
+     */
     public void autosave() {
-        save();
+        if (dirty.size() >= maxPending) requestFlush();
     }
 }
@@ -0,0 +1,194 @@
+package skyBackpack;
+
+import org.bukkit.inventory.ItemStack;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * One page of a stored backpack together with its encoded form.
+ *
+ * The encoded bytes are kept until the page changes, so a save only
+ * re-serializes pages touched since the last write. Engines that store pages
+ * individually also use the persisted flag to skip pages already on disk.
+ *
+ * Pages read from storage only hold their bytes: the ItemStacks are decoded
+ * the first time the page is viewed, and dropped again by {@link #release()}
+ * once the page is no longer shown. Empty pages are never represented by a
+ * StoredPage; page lists hold null for them.
+ *
+ * Pages pushed out of the memory budget by {@link PageBudget} go one step
+ * further and only keep their bytes deflated; they are inflated again when
+ * read or written.
+ */
+public final class StoredPage {
+
+    private final BackpackType type;
+    private volatile ItemStack[] items;  // null = not materialized (encoded or deflated is then set)
+    private volatile byte[] encoded;     // null = dirty, or cold
+    private volatile byte[] deflated;    // non-null = cold: only the compressed bytes are kept
+    private volatile int encodedLength;  // size of the last known encoding
+    private volatile boolean persisted;
+    private volatile boolean releaseAfterEncode;
+
+    private StoredPage(BackpackType type, ItemStack[] items, byte[] encoded, boolean persisted) {
+        this.type = type;
+        this.items = items;
+        this.encoded = encoded;
+        this.persisted = persisted;
+        this.encodedLength = encoded != null ? encoded.length : 0;
+    }
+
+    /** A new or modified page that still has to be encoded. */
+    public static StoredPage of(BackpackType type, ItemStack[] items) {
+        return new StoredPage(type, items, null, false);
+    }
+
+    /** A page read from the storage engine, decoded on first use. */
+    public static StoredPage loaded(BackpackType type, byte[] encoded) {
+        return new StoredPage(type, null, encoded, true);
+    }
+
+    /** A page whose bytes are known but not in the storage engine yet (journal replay, import). */
+    public static StoredPage restored(BackpackType type, byte[] encoded) {
+        return new StoredPage(type, null, encoded, false);
+    }
+
+    /**
+     * Page contents, decoded from the stored bytes if needed.
+     * @throws UncheckedIOException if the stored bytes are unreadable
+     */
+    public ItemStack[] getItems() {
+        ItemStack[] current = items;
+        if (current != null) return current;
+
+        synchronized (this) {
+            releaseAfterEncode = false;
+            if (items == null) {
+                try {
+                    if (encoded == null) {
+                        // Cold page: back to plain bytes now that it is used again
+                        encoded = BackpackCodec.inflate(deflated, encodedLength);
+                        deflated = null;
+                    }
+                    items = BackpackCodec.decodePage(type, encoded);
+                } catch (IOException e) {
+                    throw new UncheckedIOException("Page illisible (" + type + ")", e);
+                }
+            }
+            return items;
+        }
+    }
+
+    /**
+     * Page contents without keeping them: a page that is not materialized
+     * is decoded for the caller only and stays encoded (or cold).
+     * @throws UncheckedIOException if the stored bytes are unreadable
+     */
+    public ItemStack[] peek() {
+        ItemStack[] current = items;
+        if (current != null) return current;
+        try {
+            return BackpackCodec.decodePage(type, encode());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Page illisible (" + type + ")", e);
+        }
+    }
+
+    public synchronized void setItems(ItemStack[] items) {
+        this.items = items;
+        this.encoded = null;
+        this.deflated = null;
+        this.persisted = false;
+        this.releaseAfterEncode = false;
+    }
+
+    /**
+     * Approximate memory held by the page while it is not cold: its encoded
+     * size, or an estimate for a page that was never encoded.
+     */
+    public int footprint() {
+        int length = encodedLength;
+        return length > 0 ? length : 64 * type.getUsableSlots();
+    }
+
+    public boolean isPersisted() { return persisted; }
+
+    /**
+     * Record that the given bytes reached the storage engine. Ignored if the
+     * page changed since they were encoded.
+     */
+    public synchronized void markPersisted(byte[] bytes) {
+        if (encoded == bytes) persisted = true;
+    }
+
+    /**
+     * Drop the decoded items, keeping only the bytes. A dirty page is
+     * dropped as soon as it has been encoded.
+     */
+    public synchronized void release() {
+        if (encoded != null) items = null;
+        else if (deflated == null) releaseAfterEncode = true;
+    }
+
+    /**
+     * Move a persisted page to the cold tier: drop the items and keep the
+     * bytes deflated. Pages not yet written are left alone, since their
+     * encoded bytes are what {@link #markPersisted} matches against.
+     * @return false if the page could not be compressed now
+     */
+    public boolean compress() {
+        byte[] bytes;
+        synchronized (this) {
+            if (deflated != null) return true;
+            bytes = encoded;
+            if (bytes == null || !persisted) return false;
+        }
+        byte[] compressed = BackpackCodec.deflate(bytes);
+        synchronized (this) {
+            if (encoded != bytes) return false; // changed while compressing
+            deflated = compressed;
+            encoded = null;
+            items = null;
+            releaseAfterEncode = false;
+        }
+        return true;
+    }
+
+    /**
+     * Encoded page, re-serialized only if the page changed since the last call.
+     * Safe to call from the writer thread.
+     */
+    public byte[] encode() {
+        byte[] cached = encoded;
+        if (cached != null) return cached;
+
+        byte[] cold;
+        ItemStack[] current;
+        synchronized (this) {
+            if (encoded != null) return encoded;
+            cold = deflated;
+            current = items;
+        }
+
+        // Cold pages are inflated for the caller but stay compressed here
+        if (cold != null) {
+            try {
+                return BackpackCodec.inflate(cold, encodedLength);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Page compressée illisible (" + type + ")", e);
+            }
+        }
+
+        cached = BackpackCodec.encodePage(current);
+        synchronized (this) {
+            // Don't cache if the page was replaced while we were encoding
+            if (items == current && deflated == null) {
+                encoded = cached;
+                encodedLength = cached.length;
+                if (releaseAfterEncode) items = null;
+            }
+        }
+        return cached;
+    }
+}
@@ -0,0 +1,83 @@
+package skyBackpack;
+
+import org.bukkit.entity.Player;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Routes plugin tasks to the right scheduler for the running server.
+ *
+ * On Folia, work touching a player runs on that player's entity scheduler
+ * (the thread owning their region) and background work on the async
+ * scheduler. On Paper and Spigot everything goes through the Bukkit
+ * scheduler, where "player" tasks simply run on the main thread.
+ */
+public class TaskScheduler {
+
+    /** Handle returned by the repeating tasks. */
+    public interface Task {
+        void cancel();
+    }
+
+    private final SkyBackpack plugin;
+    private final boolean folia;
+
+    public TaskScheduler(SkyBackpack plugin) {
+        this.plugin = plugin;
+        this.folia = detectFolia();
+    }
+
+    private static boolean detectFolia() {
+        try {
+            Class.forName("io.papermc.paper.threadedregions.RegionizedServer");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Run on the thread that owns the player, next tick. Dropped if the
+     * player leaves before it runs.
+     */
+    public void runForPlayer(Player player, Runnable task) {
+        runForPlayer(player, task, null);
+    }
+
+    /**
+     * Same as {@link #runForPlayer(Player, Runnable)}, but {@code retired}
+     * runs instead of the task if the player left before it could run.
+     * On Paper the task itself runs and must check that the player is online.
+     */
+    public void runForPlayer(Player player, Runnable task, Runnable retired) {
+        if (folia) {
+            // null = the player was already removed, and retired won't be called
+            if (player.getScheduler().run(plugin, t -> task.run(), retired) == null && retired != null) retired.run();
+        } else {
+            plugin.getServer().getScheduler().runTask(plugin, task);
+        }
+    }
+
+    /**
+     * Run off the server threads as soon as possible.
+     */
+    public void runAsync(Runnable task) {
+        if (folia) {
+            plugin.getServer().getAsyncScheduler().runNow(plugin, t -> task.run());
+        } else {
+            plugin.getServer().getScheduler().runTaskAsynchronously(plugin, task);
+        }
+    }
+
+    /**
+     * Run off the server threads every {@code periodSeconds}, starting after one period.
+     */
+    public Task runAsyncTimer(Runnable task, long periodSeconds) {
+        if (folia) {
+            return plugin.getServer().getAsyncScheduler()
+                    .runAtFixedRate(plugin, t -> task.run(), periodSeconds, periodSeconds, TimeUnit.SECONDS)::cancel;
+        }
+        long ticks = periodSeconds * 20L;
+        return plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, task, ticks, ticks)::cancel;
+    }
+}
@@ -6,9 +6,16 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.entity.Player;
 import org.bukkit.inventory.ItemStack;
 
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class UpgradeCommand implements CommandExecutor {
 
+    private enum Payment { PAID, INSUFFICIENT, FAILED }
+
     private final SkyBackpack plugin;
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
 
     public UpgradeCommand(SkyBackpack plugin) {
         this.plugin = plugin;
@@ -48,32 +55,133 @@ public class UpgradeCommand implements CommandExecutor {
 
         long cost = type.getUpgradeCost();
 
-        // Check balance
-        if (!eco.has(player, cost)) {
-            player.sendMessage("§cFonds insuffisants ! L'upgrade coûte §e" + eco.format(cost)
-                    + "§c. Tu as §e" + eco.format(plugin.getServer().getServicesManager()
-                    .getRegistration(net.milkbowl.vault.economy.Economy.class)
-                    .getProvider().getBalance(player)) + "§c.");
+        // Contents must be saved before they are moved: no upgrade with the backpack open
+        UUID uuid = player.getUniqueId();
+        if (plugin.getGUIManager().hasSession(uuid)) {
+            player.sendMessage("§cFerme ton backpack avant de l'upgrader.");
             return true;
         }
 
-        // Withdraw money
-        if (!eco.withdraw(player, cost)) {
-            player.sendMessage("§cErreur lors du retrait de l'argent. Réessaie.");
+        // One upgrade at a time per player: the payment is in flight until complete() runs
+        if (!pending.add(uuid)) {
+            player.sendMessage("§eUn upgrade est déjà en cours.");
             return true;
         }
 
-        // Copy backpack contents to new type
-        plugin.getStorageManager().copyData(player.getUniqueId(), type, next);
-        plugin.getStorageManager().autosave();
+        // Balance check and withdrawal may hit a database: keep them off the player's thread
+        TaskScheduler scheduler = plugin.getTaskScheduler();
+        scheduler.runAsync(() -> {
+            Payment payment;
+            double balance = 0;
+            try {
+                if (!eco.has(player, cost)) {
+                    payment = Payment.INSUFFICIENT;
+                    balance = eco.getBalance(player);
+                } else {
+                    payment = eco.withdraw(player, cost) ? Payment.PAID : Payment.FAILED;
+                }
+            } catch (RuntimeException e) {
+                plugin.getLogger().severe("Paiement de l'upgrade impossible pour " + player.getName() + " : " + e);
+                payment = Payment.FAILED;
+            }
+
+            Payment result = payment;
+            double finalBalance = balance;
+            try {
+                scheduler.runForPlayer(player,
+                        () -> complete(player, type, next, cost, result, finalBalance),
+                        () -> {
+                            pending.remove(uuid);
+                            if (result == Payment.PAID) refund(player, cost, "joueur déconnecté");
+                        });
+            } catch (RuntimeException e) {
+                // Plugin disabled while the payment was running: the upgrade can't be applied anymore
+                pending.remove(uuid);
+                plugin.getLogger().warning("Upgrade interrompu pour " + player.getName() + " : " + e);
+                if (result == Payment.PAID) refund(player, cost, "plugin désactivé");
+            }
+        });
+        return true;
+    }
 
-        // Replace item in hand with upgraded backpack
-        ItemStack newItem = next.createItem();
-        player.getInventory().setItemInMainHand(newItem);
+    /**
+     * Second half of the upgrade, back on the player's thread.
+     */
+    private void complete(Player player, BackpackType type, BackpackType next, long cost, Payment payment, double balance) {
+        EconomyManager eco = plugin.getEconomyManager();
+        try {
+            switch (payment) {
+                case INSUFFICIENT:
+                    player.sendMessage("§cFonds insuffisants ! L'upgrade coûte §e" + eco.format(cost)
+                            + "§c. Tu as §e" + eco.format(balance) + "§c.");
+                    return;
+                case FAILED:
+                    player.sendMessage("§cErreur lors du retrait de l'argent. Réessaie.");
+                    return;
+                default:
+                    break;
+            }
+
+            // The player may have left or changed item while the payment was running
+            if (!player.isOnline() || BackpackType.fromItem(player.getInventory().getItemInMainHand()) != type) {
+                refund(player, cost, "backpack plus en main");
+                if (player.isOnline()) player.sendMessage("§cTu n'as plus le backpack en main, l'upgrade est annulé et remboursé.");
+                return;
+            }
+
+            // A backpack opened during the payment is saved and closed first, so its
+            // live contents are what gets moved and nothing stays editable in the old tier
+            GUIManager gui = plugin.getGUIManager();
+            if (gui.hasSession(player.getUniqueId())) {
+                gui.saveCurrentPage(player);
+                gui.removeSession(player.getUniqueId());
+                player.closeInventory();
+            }
+
+            try {
+                // Move backpack contents to new type
+                plugin.getStorageManager().moveData(player.getUniqueId(), type, next);
+                plugin.getStorageManager().autosave();
+
+                // Replace item in hand with upgraded backpack
+                ItemStack newItem = next.createItem();
+                player.getInventory().setItemInMainHand(newItem);
+            } catch (RuntimeException e) {
+                plugin.getLogger().severe("Upgrade impossible pour " + player.getName() + " : " + e);
+                refund(player, cost, "erreur pendant l'upgrade");
+                player.sendMessage("§cErreur pendant l'upgrade, tu as été remboursé.");
+                return;
+            }
+
+            player.sendMessage("§a✔ Ton backpack a été upgradé vers §e" + next.getDisplayName()
+                    + "§a ! §e" + eco.format(cost) + " §aont été retirés.");
+        } finally {
+            pending.remove(player.getUniqueId());
+        }
+    }
 
-        player.sendMessage("§a✔ Ton backpack a été upgradé vers §e" + next.getDisplayName()
-                + "§a ! §e" + eco.format(cost) + " §aont été retirés.");
+    /**
+     * Give the money back after a withdrawal whose upgrade could not be applied.
+     * Deposited on the calling thread if no task can be scheduled anymore.
+     */
+    private void refund(Player player, long cost, String reason) {
+        try {
+            plugin.getTaskScheduler().runAsync(() -> deposit(player, cost, reason));
+        } catch (RuntimeException e) {
+            deposit(player, cost, reason);
+        }
+    }
 
-        return true;
+    private void deposit(Player player, long cost, String reason) {
+        boolean refunded;
+        try {
+            refunded = plugin.getEconomyManager().deposit(player, cost);
+        } catch (RuntimeException e) {
+            refunded = false;
+        }
+        if (!refunded) {
+            plugin.getLogger().severe("Remboursement de " + cost + " impossible pour " + player.getName()
+                    + " (" + player.getUniqueId() + ", " + reason + ") : à rembourser manuellement.");
+        }
     }
 }
@@ -0,0 +1,46 @@
+package skyBackpack;
+
+import org.mockbukkit.mockbukkit.MockBukkit;
+import org.mockbukkit.mockbukkit.ServerMock;
+
+/**
+ * Boots a mock server with SkyBackpack enabled on the requested storage engine.
+ */
+final class BenchmarkEnvironment {
+
+    final ServerMock server;
+    final SkyBackpack plugin;
+
+    private BenchmarkEnvironment(ServerMock server, SkyBackpack plugin) {
+        this.server = server;
+        this.plugin = plugin;
+    }
+
+    static BenchmarkEnvironment start(String engine) {
+        ServerMock server = MockBukkit.mock();
+        SkyBackpack plugin = MockBukkit.load(SkyBackpack.class);
+
+        // Restart the plugin so StorageManager opens the requested engine
+        server.getPluginManager().disablePlugin(plugin);
+        plugin.getConfig().set("storage.engine", engine);
+        // Measure the engine itself, not the background writer
+        plugin.getConfig().set("autosave.interval-seconds", 86_400);
+        plugin.getConfig().set("autosave.max-pending", Integer.MAX_VALUE);
+        // Nor the side work: journal and audit records would pile up unbounded
+        // between writes, and the item index would be maintained on every save
+        plugin.getConfig().set("journal.enabled", false);
+        plugin.getConfig().set("audit.enabled", false);
+        plugin.getConfig().set("index.enabled", false);
+        plugin.saveConfig();
+        server.getPluginManager().enablePlugin(plugin);
+        return new BenchmarkEnvironment(server, plugin);
+    }
+
+    StorageManager storage() {
+        return plugin.getStorageManager();
+    }
+
+    void stop() {
+        MockBukkit.unmock();
+    }
+}
@@ -0,0 +1,26 @@
+package skyBackpack;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Accepts the usual JMH command line and always
+ * adds the GC profiler, so every result also reports allocation per operation.
+ *
+ * mvn -f Sky-Benchmark/pom.xml package
+ * java -jar Sky-Benchmark/target/benchmarks.jar StorageBenchmark -p players=10000 -p engine=file
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cmd = new CommandLineOptions(args);
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cmd).addProfiler(GCProfiler.class);
+        if (cmd.getIncludes().isEmpty()) builder.include("skyBackpack\\..*Benchmark");
+        new Runner(builder.build()).run();
+    }
+}
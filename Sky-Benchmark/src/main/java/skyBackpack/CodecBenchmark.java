@@ -0,0 +1,86 @@
+package skyBackpack;
+
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of one full page: the binary page codec against the YAML
+ * layout it replaced. Run with the GC profiler to compare allocation per op.
+ * binaryDecode bypasses the item interner so it stays comparable with
+ * yamlDecode; binaryDecodeInterned measures the path the plugin uses.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"BACKPACK_1", "BACKPACK_2", "BACKPACK_3"})
+    public String tier;
+
+    private BenchmarkEnvironment env;
+    private BackpackType type;
+    private ItemStack[] page;
+    private byte[] encoded;
+    private String yaml;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        env = BenchmarkEnvironment.start("file");
+        type = BackpackType.valueOf(tier);
+        page = Population.page(type, new Random(3));
+        encoded = BackpackCodec.encodePage(page);
+        yaml = yamlEncode();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.stop();
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return BackpackCodec.encodePage(page);
+    }
+
+    /** Full deserialization of every item, comparable with yamlDecode. */
+    @Benchmark
+    public ItemStack[] binaryDecode() throws IOException {
+        return BackpackCodec.decodePage(type, encoded, false);
+    }
+
+    /** Decoding as the plugin does it, through the item interner. */
+    @Benchmark
+    public ItemStack[] binaryDecodeInterned() throws IOException {
+        return BackpackCodec.decodePage(type, encoded);
+    }
+
+    @Benchmark
+    public String yamlEncode() {
+        YamlConfiguration config = new YamlConfiguration();
+        for (int slot = 0; slot < page.length; slot++) {
+            if (page[slot] != null) config.set("page_0.slot_" + slot, page[slot]);
+        }
+        return config.saveToString();
+    }
+
+    @Benchmark
+    public ItemStack[] yamlDecode() throws InvalidConfigurationException {
+        YamlConfiguration config = new YamlConfiguration();
+        config.loadFromString(yaml);
+        ItemStack[] items = new ItemStack[type.getUsableSlots()];
+        for (int slot = 0; slot < items.length; slot++) {
+            Object obj = config.get("page_0.slot_" + slot);
+            if (obj instanceof ItemStack) items[slot] = (ItemStack) obj;
+        }
+        return items;
+    }
+}
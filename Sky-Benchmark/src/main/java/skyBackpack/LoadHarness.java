@@ -0,0 +1,324 @@
+package skyBackpack;
+
+import fr.chiroyuki.skyCore.api.economy.EconomyService;
+import org.bukkit.Material;
+import org.bukkit.entity.Player;
+import org.bukkit.event.inventory.ClickType;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.inventory.EquipmentSlot;
+import org.bukkit.inventory.Inventory;
+import org.bukkit.inventory.InventoryView;
+import org.bukkit.inventory.ItemStack;
+import org.mockbukkit.mockbukkit.ServerMock;
+import org.mockbukkit.mockbukkit.entity.PlayerMock;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Simulated players driving BackpackListener and /upgrade on a mock server.
+ *
+ * Each player holds a backpack and, every tick, performs each action with
+ * the probability given by its rate (actions per player per second):
+ * right-click open, item moves, drags, arrow navigation, close, quit and
+ * /upgrade. Players who quit are disconnected from the mock server and
+ * reconnect later (rejoin rate), going through pre-login again. After a
+ * warmup, the time spent in every handler, event dispatch included, is
+ * reported as milliseconds per tick next to the plugin's own metrics.
+ *
+ * java -cp Sky-Benchmark/target/benchmarks.jar skyBackpack.LoadHarness players=500 ticks=6000 engine=file
+ *
+ * /upgrade is paid through an in-memory economy answering after
+ * economy-latency-ms, standing in for SkyCore. The upgrade row only covers
+ * the command on the player's thread; the payment shows up in the economy
+ * metrics and its completion in the scheduler tick.
+ */
+public final class LoadHarness {
+
+    private enum Step { OPEN, MOVE, DRAG, PAGE, CLOSE, QUIT, REJOIN, UPGRADE, TICK }
+
+    private final Map<String, String> options = new HashMap<>();
+    private final long[] nanos = new long[Step.values().length];
+    private final long[] counts = new long[Step.values().length];
+    private final double[] chance = new double[Step.values().length];
+    private final Set<PlayerMock> offline = new HashSet<>();
+    private Random random;
+
+    private LoadHarness(String[] args) {
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) options.put(arg.substring(0, eq), arg.substring(eq + 1));
+        }
+    }
+
+    public static void main(String[] args) {
+        new LoadHarness(args).run();
+    }
+
+    private int intOption(String key, int def) {
+        String value = options.get(key);
+        return value == null ? def : Integer.parseInt(value);
+    }
+
+    private double rateOption(String key, double def) {
+        String value = options.get(key);
+        double perSecond = value == null ? def : Double.parseDouble(value);
+        return Math.min(1.0, perSecond / 20.0);
+    }
+
+    private void run() {
+        int players = intOption("players", 200);
+        int ticks = intOption("ticks", 6000);
+        int warmup = intOption("warmup", 1200);
+        random = new Random(intOption("seed", 42));
+
+        chance[Step.OPEN.ordinal()] = rateOption("open", 0.2);
+        chance[Step.MOVE.ordinal()] = rateOption("move", 2.0);
+        chance[Step.DRAG.ordinal()] = rateOption("drag", 0.3);
+        chance[Step.PAGE.ordinal()] = rateOption("page", 0.3);
+        chance[Step.CLOSE.ordinal()] = rateOption("close", 0.1);
+        chance[Step.QUIT.ordinal()] = rateOption("quit", 0.002);
+        chance[Step.REJOIN.ordinal()] = rateOption("rejoin", 0.2);
+        chance[Step.UPGRADE.ordinal()] = rateOption("upgrade", 0.005);
+
+        BenchmarkEnvironment env = BenchmarkEnvironment.start(options.getOrDefault("engine", "file"));
+        try {
+            ServerMock server = env.server;
+            StorageManager storage = env.storage();
+            env.plugin.getEconomyManager().useService(new StubEconomy(intOption("economy-latency-ms", 2)));
+
+            List<PlayerMock> online = new ArrayList<>(players);
+            for (int i = 0; i < players; i++) {
+                PlayerMock player = server.addPlayer();
+                BackpackType top = Population.tier(random);
+                for (BackpackType type : BackpackType.values()) {
+                    if (type.getLevel() > top.getLevel()) break;
+                    for (int p = 0; p < type.getTotalPages(); p++) {
+                        storage.setPage(player.getUniqueId(), type, p, Population.page(type, random));
+                    }
+                }
+                player.getInventory().setItemInMainHand(top.createItem());
+                online.add(player);
+            }
+            storage.flush();
+
+            System.out.println("Warmup : " + warmup + " ticks, " + players + " joueurs");
+            for (int t = 0; t < warmup; t++) tick(env, online);
+            Arrays.fill(nanos, 0L);
+            Arrays.fill(counts, 0L);
+            env.plugin.getMetrics().reset();
+
+            System.out.println("Mesure : " + ticks + " ticks");
+            long wall = System.nanoTime();
+            for (int t = 0; t < ticks; t++) tick(env, online);
+            wall = System.nanoTime() - wall;
+
+            report(env, ticks, wall);
+        } finally {
+            env.stop();
+        }
+    }
+
+    // ──────────────────────────────────────────────────
+    // Simulation
+    // ──────────────────────────────────────────────────
+
+    private void tick(BenchmarkEnvironment env, List<PlayerMock> online) {
+        for (PlayerMock player : online) {
+            if (offline.contains(player)) {
+                if (roll(Step.REJOIN)) rejoin(player);
+                continue;
+            }
+            GUIManager.BackpackSession session = env.plugin.getGUIManager().getSession(player.getUniqueId());
+            if (session == null) {
+                if (roll(Step.OPEN)) open(env, player);
+                else if (roll(Step.UPGRADE)) upgrade(player);
+                else if (roll(Step.QUIT)) quit(player);
+                continue;
+            }
+            if (roll(Step.MOVE)) move(player, session);
+            if (roll(Step.DRAG)) drag(env, player, session);
+            if (roll(Step.PAGE)) page(player, session);
+            if (roll(Step.CLOSE)) close(player);
+        }
+
+        // Deferred work such as page switches runs with the scheduler
+        long start = System.nanoTime();
+        env.server.getScheduler().performOneTick();
+        record(Step.TICK, start);
+    }
+
+    private boolean roll(Step step) {
+        return random.nextDouble() < chance[step.ordinal()];
+    }
+
+    private void record(Step step, long start) {
+        nanos[step.ordinal()] += System.nanoTime() - start;
+        counts[step.ordinal()]++;
+    }
+
+    private void open(BenchmarkEnvironment env, PlayerMock player) {
+        ItemStack hand = player.getInventory().getItemInMainHand();
+        PlayerInteractEvent event = new PlayerInteractEvent(player, org.bukkit.event.block.Action.RIGHT_CLICK_AIR, hand, null, null, EquipmentSlot.HAND);
+        long start = System.nanoTime();
+        env.server.getPluginManager().callEvent(event);
+        record(Step.OPEN, start);
+    }
+
+    /** Pick up a stack and put it down in another usable slot of the page. */
+    private void move(PlayerMock player, GUIManager.BackpackSession session) {
+        InventoryView view = player.getOpenInventory();
+        Inventory inv = session.getInventory();
+        int usable = session.getType().getUsableSlots();
+        int from = random.nextInt(usable);
+        int to = random.nextInt(usable);
+
+        long start = System.nanoTime();
+        InventoryClickEvent pick = player.simulateInventoryClick(view, ClickType.LEFT, from);
+        InventoryClickEvent place = player.simulateInventoryClick(view, ClickType.LEFT, to);
+        record(Step.MOVE, start);
+
+        // The mock does not apply clicks: mirror what the client would do
+        if (pick.isCancelled() || place.isCancelled()) return;
+        ItemStack moved = inv.getItem(from);
+        inv.setItem(from, inv.getItem(to));
+        inv.setItem(to, moved);
+    }
+
+    /** Spread a stack of cobblestone over a few slots, sometimes crossing a UI slot. */
+    private void drag(BenchmarkEnvironment env, PlayerMock player, GUIManager.BackpackSession session) {
+        InventoryView view = player.getOpenInventory();
+        int size = session.getType().getInventorySize();
+        Map<Integer, ItemStack> slots = new HashMap<>();
+        for (int i = 0; i < 4; i++) slots.put(random.nextInt(size), new ItemStack(Material.COBBLESTONE, 16));
+        InventoryDragEvent event = new InventoryDragEvent(view, null, new ItemStack(Material.COBBLESTONE, 64), false, slots);
+
+        long start = System.nanoTime();
+        env.server.getPluginManager().callEvent(event);
+        record(Step.DRAG, start);
+
+        if (event.isCancelled()) return;
+        Inventory inv = session.getInventory();
+        for (Map.Entry<Integer, ItemStack> entry : slots.entrySet()) inv.setItem(entry.getKey(), entry.getValue());
+    }
+
+    private void page(PlayerMock player, GUIManager.BackpackSession session) {
+        int arrow = session.getType().getInventorySize() - 1;
+        ClickType click = random.nextBoolean() ? ClickType.LEFT : ClickType.RIGHT;
+        long start = System.nanoTime();
+        player.simulateInventoryClick(player.getOpenInventory(), click, arrow);
+        record(Step.PAGE, start);
+    }
+
+    private void close(PlayerMock player) {
+        long start = System.nanoTime();
+        player.closeInventory();
+        record(Step.CLOSE, start);
+    }
+
+    /** Leave the mock server: PlayerQuitEvent, then the player is offline. */
+    private void quit(PlayerMock player) {
+        long start = System.nanoTime();
+        player.disconnect();
+        record(Step.QUIT, start);
+        offline.add(player);
+    }
+
+    /** Join again through pre-login, login and join, which reload the player's data. */
+    private void rejoin(PlayerMock player) {
+        long start = System.nanoTime();
+        player.reconnect();
+        record(Step.REJOIN, start);
+        offline.remove(player);
+    }
+
+    private void upgrade(PlayerMock player) {
+        long start = System.nanoTime();
+        player.performCommand("upgrade");
+        record(Step.UPGRADE, start);
+    }
+
+    // ──────────────────────────────────────────────────
+    // Economy
+    // ──────────────────────────────────────────────────
+
+    /**
+     * In-memory balances with a fixed delay per call, like a database-backed
+     * economy. Every player starts rich enough to pay any upgrade.
+     */
+    private static final class StubEconomy implements EconomyService {
+        private final Map<UUID, Double> balances = new ConcurrentHashMap<>();
+        private final long latencyMs;
+
+        StubEconomy(long latencyMs) {
+            this.latencyMs = latencyMs;
+        }
+
+        private void delay() {
+            if (latencyMs <= 0) return;
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public boolean has(Player player, double amount) {
+            delay();
+            return getBalance(player) >= amount;
+        }
+
+        @Override
+        public boolean withdraw(Player player, double amount) {
+            delay();
+            double[] after = new double[1];
+            balances.compute(player.getUniqueId(), (k, v) -> {
+                double balance = v == null ? 1e12 : v;
+                after[0] = balance - amount;
+                return after[0] >= 0 ? after[0] : balance;
+            });
+            return after[0] >= 0;
+        }
+
+        @Override
+        public boolean deposit(Player player, double amount) {
+            delay();
+            balances.merge(player.getUniqueId(), 1e12 + amount, (v, d) -> v + amount);
+            return true;
+        }
+
+        @Override
+        public String format(double amount) {
+            return String.format(Locale.ROOT, "%.0f$", amount);
+        }
+
+        @Override
+        public double getBalance(Player player) {
+            return balances.getOrDefault(player.getUniqueId(), 1e12);
+        }
+    }
+
+    // ──────────────────────────────────────────────────
+    // Report
+    // ──────────────────────────────────────────────────
+
+    private void report(BenchmarkEnvironment env, int ticks, long wall) {
+        long total = 0;
+        System.out.println();
+        System.out.println(String.format("%-9s %10s %12s %12s", "handler", "count", "avg (ms)", "ms/tick"));
+        for (Step step : Step.values()) {
+            long count = counts[step.ordinal()];
+            long spent = nanos[step.ordinal()];
+            total += spent;
+            System.out.println(String.format("%-9s %10d %12.4f %12.4f", step.name().toLowerCase(Locale.ROOT), count,
+                    count == 0 ? 0.0 : spent / (double) count / 1_000_000.0, spent / (double) ticks / 1_000_000.0));
+        }
+        System.out.println(String.format("total     %10s %12s %12.4f", "", "", total / (double) ticks / 1_000_000.0));
+        System.out.println(String.format("wall      %10s %12s %12.4f", "", "", wall / (double) ticks / 1_000_000.0));
+        System.out.println();
+        for (String line : env.plugin.getMetrics().report()) System.out.println(line);
+    }
+}
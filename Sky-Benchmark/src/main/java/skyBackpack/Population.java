@@ -0,0 +1,100 @@
+package skyBackpack;
+
+import org.bukkit.Material;
+import org.bukkit.inventory.ItemStack;
+import org.bukkit.inventory.meta.ItemMeta;
+
+import java.util.*;
+
+/**
+ * Synthetic backpack contents for the benchmarks.
+ *
+ * Pages are 70-100% full, mostly with full stacks of a handful of farm and
+ * mining materials, with a few renamed tools. Tiers follow a typical
+ * distribution (60% BACKPACK_1, 30% BACKPACK_2, 10% BACKPACK_3), and upgraded
+ * players keep the lower tiers the way copyData leaves them: every higher
+ * tier holds the items of the tier below at the same page and slot, plus
+ * what was added after the upgrade.
+ */
+final class Population {
+
+    private static final Material[] COMMON = {
+            Material.COBBLESTONE, Material.WHEAT, Material.IRON_INGOT, Material.DIRT,
+            Material.OAK_LOG, Material.SUGAR_CANE, Material.CACTUS, Material.MELON_SLICE,
+            Material.PUMPKIN, Material.COAL, Material.GOLD_INGOT, Material.REDSTONE,
+            Material.BONE, Material.STRING, Material.DIAMOND
+    };
+
+    private Population() {}
+
+    static ItemStack[] page(BackpackType type, Random random) {
+        ItemStack[] items = new ItemStack[type.getUsableSlots()];
+        double fill = 0.7 + random.nextDouble() * 0.3;
+        for (int slot = 0; slot < items.length; slot++) {
+            if (random.nextDouble() > fill) continue;
+            items[slot] = item(random);
+        }
+        return items;
+    }
+
+    private static ItemStack item(Random random) {
+        if (random.nextInt(20) == 0) {
+            ItemStack tool = new ItemStack(Material.DIAMOND_SWORD);
+            ItemMeta meta = tool.getItemMeta();
+            meta.setDisplayName("§bÉpée #" + random.nextInt(1000));
+            tool.setItemMeta(meta);
+            return tool;
+        }
+        Material material = COMMON[random.nextInt(COMMON.length)];
+        int amount = random.nextInt(4) == 0 ? 1 + random.nextInt(63) : 64;
+        return new ItemStack(material, amount);
+    }
+
+    static BackpackType tier(Random random) {
+        int roll = random.nextInt(10);
+        if (roll < 6) return BackpackType.BACKPACK_1;
+        if (roll < 9) return BackpackType.BACKPACK_2;
+        return BackpackType.BACKPACK_3;
+    }
+
+    /**
+     * Fill the storage with the given number of players, writing and evicting
+     * them in chunks so the whole population never sits in memory at once.
+     */
+    static List<UUID> generate(StorageManager storage, int players, long seed) {
+        Random random = new Random(seed);
+        List<UUID> uuids = new ArrayList<>(players);
+        List<UUID> chunk = new ArrayList<>();
+
+        for (int i = 0; i < players; i++) {
+            UUID uuid = new UUID(seed, i);
+            BackpackType top = tier(random);
+            ItemStack[][] below = null;
+            for (BackpackType type : BackpackType.values()) {
+                if (type.getLevel() > top.getLevel()) break;
+                ItemStack[][] pages = new ItemStack[type.getTotalPages()][];
+                for (int p = 0; p < pages.length; p++) {
+                    pages[p] = page(type, random);
+                    if (below != null && p < below.length) {
+                        // The upgrade copied the lower tier over the same slots
+                        for (int s = 0; s < below[p].length && s < pages[p].length; s++) {
+                            if (below[p][s] != null) pages[p][s] = below[p][s];
+                        }
+                    }
+                    storage.setPage(uuid, type, p, pages[p]);
+                }
+                below = pages;
+            }
+            uuids.add(uuid);
+            chunk.add(uuid);
+
+            if (chunk.size() == 1000 || i == players - 1) {
+                storage.flush();
+                for (UUID loaded : chunk) storage.unload(loaded);
+                storage.flush();
+                chunk.clear();
+            }
+        }
+        return uuids;
+    }
+}
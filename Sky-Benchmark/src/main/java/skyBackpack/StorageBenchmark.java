@@ -0,0 +1,95 @@
+package skyBackpack;
+
+import org.bukkit.inventory.ItemStack;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StorageManager operations against a synthetic population.
+ *
+ * load     – cold read of one player from the engine (what pre-login pays)
+ * save     – one modified player written back
+ * getPage  – hot page lookup
+ * copyData – upgrade copy between tiers
+ * saveAll  – every loaded player re-encoded and written (single shot)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx8g"})
+public class StorageBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int players;
+
+    @Param({"file", "mapped", "sqlite"})
+    public String engine;
+
+    private BenchmarkEnvironment env;
+    private StorageManager storage;
+    private List<UUID> uuids;
+    private ItemStack[] replacement;
+    private final Random random = new Random(42);
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        env = BenchmarkEnvironment.start(engine);
+        storage = env.storage();
+        uuids = Population.generate(storage, players, 1L);
+        replacement = Population.page(BackpackType.BACKPACK_1, new Random(7));
+
+        // Hot set for getPage / copyData / saveAll
+        for (UUID uuid : uuids) storage.preload(uuid);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        env.stop();
+    }
+
+    private UUID next() {
+        return uuids.get(random.nextInt(uuids.size()));
+    }
+
+    @Benchmark
+    public Object load() throws IOException {
+        return storage.readStored(next());
+    }
+
+    @Benchmark
+    public boolean save() {
+        UUID uuid = next();
+        storage.setPage(uuid, BackpackType.BACKPACK_1, 0, replacement.clone());
+        return storage.savePlayer(uuid);
+    }
+
+    @Benchmark
+    public void getPage(Blackhole bh) {
+        UUID uuid = next();
+        for (BackpackType type : BackpackType.values()) {
+            bh.consume(storage.getPage(uuid, type, 0));
+        }
+    }
+
+    @Benchmark
+    public void copyData() {
+        storage.copyData(next(), BackpackType.BACKPACK_1, BackpackType.BACKPACK_2);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public void saveAll() {
+        for (UUID uuid : uuids) {
+            storage.setPage(uuid, BackpackType.BACKPACK_1, 0, storage.getPage(uuid, BackpackType.BACKPACK_1, 0).clone());
+        }
+        storage.save();
+    }
+}